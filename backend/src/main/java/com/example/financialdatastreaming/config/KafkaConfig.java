@@ -1,5 +1,6 @@
 package com.example.financialdatastreaming.config;
 
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
 import com.example.financialdatastreaming.dto.StockPriceDto;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.NewTopic;
@@ -32,6 +33,9 @@ public class KafkaConfig {
     @Value("${app.kafka.topics.processed-stock-prices}")
     private String processedStockPricesTopic;
 
+    @Value("${app.kafka.topics.order-book}")
+    private String orderBookTopic;
+
     @Bean
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
@@ -49,6 +53,11 @@ public class KafkaConfig {
         return new NewTopic(processedStockPricesTopic, 3, (short) 1);
     }
 
+    @Bean
+    public NewTopic orderBookTopic() {
+        return new NewTopic(orderBookTopic, 3, (short) 1);
+    }
+
     // Producer configuration for JSON serialized messages
     @Bean
     public ProducerFactory<String, StockPriceDto> producerFactory() {
@@ -93,4 +102,44 @@ public class KafkaConfig {
         factory.getContainerProperties().setPollTimeout(3000);
         return factory;
     }
-}
\ No newline at end of file
+
+    // Order book depth events: higher rate, so favour batching over per-record acks
+    @Bean
+    public ProducerFactory<String, OrderBookEventDto> orderBookProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "1");
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 65536);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
+        return new DefaultKafkaProducerFactory<>(configProps);
+    }
+
+    @Bean
+    public KafkaTemplate<String, OrderBookEventDto> orderBookKafkaTemplate() {
+        return new KafkaTemplate<>(orderBookProducerFactory());
+    }
+
+    @Bean
+    public ConsumerFactory<String, OrderBookEventDto> orderBookConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 2000);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new JsonDeserializer<>(OrderBookEventDto.class, false));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, OrderBookEventDto> orderBookListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, OrderBookEventDto> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(orderBookConsumerFactory());
+        factory.setConcurrency(3);
+        factory.getContainerProperties().setPollTimeout(3000);
+        return factory;
+    }
+}
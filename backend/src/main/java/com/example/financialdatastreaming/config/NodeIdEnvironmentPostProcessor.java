@@ -0,0 +1,40 @@
+package com.example.financialdatastreaming.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Defaults {@code app.node-id} to the host name plus a random suffix, resolved once per
+ * process. The id names this node's broadcast and order-book consumer groups, so two
+ * replicas must never share it. A port-based default would collide across hosts, and a
+ * {@code ${random.uuid}} placeholder would resolve differently at each use. An explicit
+ * {@code app.node-id} (e.g. {@code APP_NODE_ID}) still wins.
+ */
+public class NodeIdEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String NODE_ID_PROPERTY = "app.node-id";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (environment.containsProperty(NODE_ID_PROPERTY)) {
+            return;
+        }
+        String nodeId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        environment.getPropertySources().addLast(new MapPropertySource("nodeIdDefault", Map.of(NODE_ID_PROPERTY, nodeId)));
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+}
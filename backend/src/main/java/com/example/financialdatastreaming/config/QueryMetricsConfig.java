@@ -0,0 +1,99 @@
+package com.example.financialdatastreaming.config;
+
+import com.example.financialdatastreaming.repository.QueryMetrics;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.function.SingletonSupplier;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Wires {@link QueryMetrics} into every Spring Data repository proxy and wraps the
+ * DataSource so connection checkouts are charged to the query that caused them.
+ */
+@Configuration
+public class QueryMetricsConfig {
+
+    // Static and lazily resolved so post-processing does not force early creation of the meter registry
+    @Bean
+    public static BeanPostProcessor queryMetricsPostProcessor(ObjectProvider<QueryMetrics> queryMetricsProvider) {
+        Supplier<QueryMetrics> queryMetrics = SingletonSupplier.of(queryMetricsProvider::getObject);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> {
+                                String repositoryName = repositoryInformation.getRepositoryInterface().getSimpleName();
+                                // Resolved on a method's first call, then a plain lookup with nothing allocated
+                                Map<Method, QueryMetrics.QueryMeters> metersByMethod = new ConcurrentHashMap<>();
+                                MethodInterceptor timing = invocation -> {
+                                    Method method = invocation.getMethod();
+                                    // Default methods (e.g. findCandles) only route to other repository methods, which
+                                    // come back through this proxy and are timed there; timing both would count them twice
+                                    if (method.isDefault()) {
+                                        return invocation.proceed();
+                                    }
+                                    QueryMetrics.QueryMeters meters = metersByMethod.get(method);
+                                    if (meters == null) {
+                                        meters = metersByMethod.computeIfAbsent(method,
+                                                m -> queryMetrics.get().meters(repositoryName, m));
+                                    }
+                                    return queryMetrics.get().invoke(meters, invocation);
+                                };
+                                // Outermost, so connections checked out by the transaction interceptor are counted
+                                proxyFactory.addAdvice(0, timing);
+                            }));
+                }
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PoolWaitTrackingDataSource)) {
+                    return new PoolWaitTrackingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // DelegatingDataSource keeps unwrap() working, so the Hikari pool metrics still bind
+    static final class PoolWaitTrackingDataSource extends DelegatingDataSource {
+
+        PoolWaitTrackingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return super.getConnection();
+            } finally {
+                QueryMetrics.recordPoolWait(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return super.getConnection(username, password);
+            } finally {
+                QueryMetrics.recordPoolWait(System.nanoTime() - start);
+            }
+        }
+    }
+}
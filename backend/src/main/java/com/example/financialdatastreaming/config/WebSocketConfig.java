@@ -3,18 +3,24 @@ package com.example.financialdatastreaming.config;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        // The outbound pool would otherwise let two ticks for one session overtake each other,
+        // which a client reads as a sequence gap
+        config.setPreservePublishOrder(true);
     }
 
     @Override
@@ -26,19 +32,28 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        // Configure thread pool for handling inbound messages with high throughput
-        registration.taskExecutor()
-                .corePoolSize(4)
-                .maxPoolSize(10)
-                .queueCapacity(25);
+        registration.taskExecutor(channelExecutor("ws-inbound-"));
     }
     
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
-        // Configure thread pool for handling outbound messages with high throughput
-        registration.taskExecutor()
-                .corePoolSize(4)
-                .maxPoolSize(10)
-                .queueCapacity(25);
+        registration.taskExecutor(channelExecutor("ws-outbound-"));
+    }
+    
+    /*
+     * A full queue runs the task on the sending thread instead of rejecting it: a rejected
+     * outbound task is a tick silently lost for a subscriber, a rejected inbound one a lost
+     * CONNECT or resume. Running it in place slows the Kafka listener or the client's socket
+     * thread instead, which shows up as lag rather than loss. Slow sessions are bounded
+     * separately by the per-session send buffer and time limits.
+     */
+    private static ThreadPoolTaskExecutor channelExecutor(String threadNamePrefix) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(10);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
     }
 }
\ No newline at end of file
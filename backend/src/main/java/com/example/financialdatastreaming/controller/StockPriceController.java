@@ -1,13 +1,26 @@
 package com.example.financialdatastreaming.controller;
 
+import com.example.financialdatastreaming.dto.MarketRankingsDto;
+import com.example.financialdatastreaming.dto.OrderBookSnapshotDto;
+import com.example.financialdatastreaming.dto.PriceHistoryResult;
 import com.example.financialdatastreaming.dto.StockPriceDto;
 import com.example.financialdatastreaming.dto.StockPriceHistoryRequest;
 import com.example.financialdatastreaming.dto.SystemMetricsDto;
+import com.example.financialdatastreaming.service.MarketRankingService;
+import com.example.financialdatastreaming.service.OrderBookEngine;
 import com.example.financialdatastreaming.service.StockPriceService;
+import com.example.financialdatastreaming.service.StockPriceStreamService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +32,12 @@ import java.util.Map;
 public class StockPriceController {
 
     private final StockPriceService stockPriceService;
+    private final StockPriceStreamService stockPriceStreamService;
+    private final MarketRankingService marketRankingService;
+    private final OrderBookEngine orderBookEngine;
+
+    @Value("${app.history-cache.closed-max-age:60s}")
+    private Duration closedHistoryMaxAge;
 
     @GetMapping("/{symbol}/latest")
     public ResponseEntity<StockPriceDto> getLatestPrice(@PathVariable String symbol) {
@@ -35,10 +54,25 @@ public class StockPriceController {
         Instant endTime = to != null ? to : Instant.now();
         Instant startTime = from != null ? from : endTime.minusSeconds(86400); // Default to last 24 hours
         
-        return ResponseEntity.ok(
+        return conditionalResponse(
                 stockPriceService.getPriceHistory(symbol, startTime, endTime, limit));
     }
 
+    @GetMapping("/{symbol}/candles")
+    public ResponseEntity<List<StockPriceDto>> getCandles(
+            @PathVariable String symbol,
+            @RequestParam(defaultValue = "1m") String interval,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) Integer limit) {
+        
+        Instant endTime = to != null ? to : Instant.now();
+        Instant startTime = from != null ? from : endTime.minusSeconds(86400); // Default to last 24 hours
+        
+        return conditionalResponse(
+                stockPriceService.getPriceHistory(symbol, startTime, endTime, interval, limit));
+    }
+
     @PostMapping("/{symbol}/history")
     public ResponseEntity<List<StockPriceDto>> getPriceHistoryAdvanced(
             @PathVariable String symbol,
@@ -50,7 +84,30 @@ public class StockPriceController {
                         request.getFrom(),
                         request.getTo(),
                         request.getInterval(),
-                        request.getLimit()));
+                        request.getLimit()).getPrices());
+    }
+
+    // Written directly to the async response so the stream service can use non-blocking I/O
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamPrices(
+            @RequestParam(required = false) List<String> symbols,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        List<String> subscribed = symbols != null && !symbols.isEmpty()
+                ? symbols : stockPriceService.getAvailableSymbols();
+        stockPriceStreamService.subscribe(request, response, subscribed, lastEventId);
+    }
+
+    @GetMapping("/{symbol}/book")
+    public ResponseEntity<OrderBookSnapshotDto> getOrderBook(@PathVariable String symbol) {
+        return ResponseEntity.ok(orderBookEngine.getSnapshot(symbol));
+    }
+
+    @GetMapping("/rankings")
+    public ResponseEntity<MarketRankingsDto> getRankings() {
+        return ResponseEntity.ok(marketRankingService.getRankings());
     }
 
     @GetMapping("/symbols")
@@ -67,4 +124,23 @@ public class StockPriceController {
     public ResponseEntity<Map<String, Object>> getStatistics() {
         return ResponseEntity.ok(stockPriceService.getStatistics());
     }
-}
\ No newline at end of file
+    
+    // Bad request parameters, e.g. an interval that is not a positive count of m, h, d or w
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+    
+    // Spring answers 304 itself when If-None-Match matches the ETag set here.
+    // Closed ranges only change when a late tick lands in them (the server then evicts its own
+    // copy), so clients and proxies may reuse them briefly and revalidate by ETag afterwards.
+    private ResponseEntity<List<StockPriceDto>> conditionalResponse(PriceHistoryResult history) {
+        CacheControl cacheControl = history.isClosed()
+                ? CacheControl.maxAge(closedHistoryMaxAge).cachePublic().mustRevalidate()
+                : CacheControl.noCache().cachePublic();
+        return ResponseEntity.ok()
+                .eTag(history.getEtag())
+                .cacheControl(cacheControl)
+                .body(history.getPrices());
+    }
+}
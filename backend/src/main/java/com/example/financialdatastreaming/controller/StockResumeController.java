@@ -0,0 +1,27 @@
+package com.example.financialdatastreaming.controller;
+
+import com.example.financialdatastreaming.dto.ResumeRequestDto;
+import com.example.financialdatastreaming.dto.ResumeResponseDto;
+import com.example.financialdatastreaming.service.TickReplayBuffer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+/**
+ * STOMP resume: a client sends {@code /app/resume} with the last sequence it saw for a
+ * symbol and receives the missed ticks (or a snapshot) on {@code /user/queue/resume}.
+ * Sessions are anonymous, so the reply is routed by session id.
+ */
+@Controller
+@RequiredArgsConstructor
+public class StockResumeController {
+
+    private final TickReplayBuffer tickReplayBuffer;
+
+    @MessageMapping("/resume")
+    @SendToUser(destinations = "/queue/resume", broadcast = false)
+    public ResumeResponseDto resume(ResumeRequestDto request) {
+        return tickReplayBuffer.resume(request.getSymbol(), request.getLastSequence());
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.financialdatastreaming.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketRankingsDto {
+    
+    private List<Entry> topGainers;
+    private List<Entry> topLosers;
+    private List<Entry> mostActive;
+    private List<Entry> widestRange;
+    private Long timestamp;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private String symbol;
+        private BigDecimal price;
+        private double value; // % change from open, volume, or intraday range % depending on the ranking
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.financialdatastreaming.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBookEventDto {
+    
+    public enum Side { BID, ASK }
+    
+    // SNAPSHOT carries the full book as of its sequence and replaces whatever a consumer holds
+    public enum Action { ADD, MODIFY, DELETE, SNAPSHOT }
+    
+    private String symbol;
+    private Side side;
+    private Action action;
+    private BigDecimal price;
+    private Long size; // new total size at the level; ignored for DELETE
+    private Long sequence; // per-symbol, increasing; a SNAPSHOT repeats that of the last event it includes
+    private List<OrderBookSnapshotDto.Level> bids; // SNAPSHOT only, best first
+    private List<OrderBookSnapshotDto.Level> asks; // SNAPSHOT only, best first
+    
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ", timezone = "UTC")
+    private Instant timestamp;
+}
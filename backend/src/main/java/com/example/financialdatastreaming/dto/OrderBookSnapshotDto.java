@@ -0,0 +1,34 @@
+package com.example.financialdatastreaming.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBookSnapshotDto {
+    
+    private String symbol;
+    private List<Level> bids; // best first
+    private List<Level> asks; // best first
+    private BigDecimal spread;
+    private BigDecimal mid;
+    private Double imbalance; // (bid size - ask size) / total over the published depth, in [-1, 1]
+    private Long sequence;
+    private Long timestamp;
+    private boolean stale; // the book lost events and is waiting for the next full snapshot; levels are incomplete
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Level {
+        private BigDecimal price;
+        private long size;
+    }
+}
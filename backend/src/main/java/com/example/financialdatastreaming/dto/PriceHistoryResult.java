@@ -0,0 +1,18 @@
+package com.example.financialdatastreaming.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceHistoryResult {
+    private List<StockPriceDto> prices;
+    private String etag;
+    private boolean closed; // true when every segment in the range has ended and the body can never change
+}
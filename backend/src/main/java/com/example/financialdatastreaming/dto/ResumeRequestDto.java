@@ -0,0 +1,13 @@
+package com.example.financialdatastreaming.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeRequestDto {
+    private String symbol;
+    private Long lastSequence; // null on a fresh subscription
+}
@@ -0,0 +1,20 @@
+package com.example.financialdatastreaming.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumeResponseDto {
+    
+    private String symbol;
+    private boolean snapshot; // true: ticks holds only the latest state, not every missed tick
+    private List<StockPriceDto> ticks; // oldest first
+    private Long latestSequence;
+}
@@ -1,9 +1,12 @@
 package com.example.financialdatastreaming.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
@@ -30,4 +33,14 @@ public class StockPriceDto {
     private BigDecimal changeAmount;
     private Long processedTimestamp;
     private Long processingLatency; // in milliseconds
+    private Long sequence; // per symbol, stamped by the consumer
+    
+    // Backfilled by the generator's history seeding rather than ticked live; kept out of latency metrics
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean historical;
+    
+    // Process-local SymbolRegistry id; never serialized
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Integer symbolId;
 }
\ No newline at end of file
@@ -13,6 +13,9 @@ public class SystemMetricsDto {
     private Long totalDataPoints;
     private Double averageQueryTimeMs;
     private Double averageLatencyMs;
+    private Double p50LatencyMs;
+    private Double p99LatencyMs;
+    private Double p999LatencyMs;
     private Long activeWebSocketConnections;
     private Long messagesPerSecond;
     private Double cpuUsagePercent;
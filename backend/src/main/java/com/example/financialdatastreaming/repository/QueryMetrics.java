@@ -0,0 +1,169 @@
+package com.example.financialdatastreaming.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing for every repository call, derived methods, native queries and the JDBC
+ * fragment alike. Each query name ({@code Repository.method}) gets a latency histogram,
+ * a rows-returned summary and the connection-pool wait spent while it ran; calls over
+ * the slow threshold are logged with the shape of their bind parameters, never the values.
+ * Meters are resolved once per repository method by the caller ({@link #meters}), and the
+ * per-thread call state is a reusable holder, so a timed call allocates nothing.
+ */
+@Slf4j
+@Component
+public class QueryMetrics {
+
+    // The query running on this thread, so connection checkouts can be attributed to it
+    private static final ThreadLocal<QueryCall> CURRENT = ThreadLocal.withInitial(QueryCall::new);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, QueryMeters> metersByQuery = new ConcurrentHashMap<>();
+
+    @Value("${app.db.slow-query-threshold-ms:200}")
+    private long slowQueryThresholdMs;
+
+    public QueryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Meters for one repository method; resolve once per Method and pass to invoke
+    public QueryMeters meters(String repositoryName, Method method) {
+        return metersByQuery.computeIfAbsent(repositoryName + "." + method.getName(), this::createMeters);
+    }
+
+    public Object invoke(QueryMeters meters, MethodInvocation invocation) throws Throwable {
+        // A query issued while another runs (e.g. from a listener) keeps its own pool wait; the outer one resumes after
+        QueryCall call = CURRENT.get();
+        long outerPoolWaitNanos = call.poolWaitNanos;
+        boolean outerActive = call.active;
+        call.poolWaitNanos = 0;
+        call.active = true;
+
+        long start = System.nanoTime();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            long poolWaitNanos = call.poolWaitNanos;
+            call.poolWaitNanos = outerPoolWaitNanos;
+            call.active = outerActive;
+            (failed ? meters.failures : meters.latency).record(elapsedNanos, TimeUnit.NANOSECONDS);
+            meters.poolWait.record(poolWaitNanos, TimeUnit.NANOSECONDS);
+            long rows = failed ? -1 : countRows(result);
+            if (rows >= 0) {
+                meters.rows.record(rows);
+            }
+            if (elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMs)) {
+                log.warn("Slow query {} took {}ms (pool wait {}ms, rows {}{}) params {}",
+                        meters.name, elapsedNanos / 1_000_000, poolWaitNanos / 1_000_000,
+                        rows, failed ? ", failed" : "", parameterShapes(invocation.getArguments()));
+            }
+        }
+    }
+
+    // Called by the DataSource wrapper for each connection checkout
+    public static void recordPoolWait(long nanos) {
+        QueryCall call = CURRENT.get();
+        if (call.active) {
+            call.poolWaitNanos += nanos;
+        }
+    }
+
+    // Mean latency across every instrumented query, or 0 before the first call
+    public double getAverageQueryTimeMs() {
+        double totalMs = 0;
+        long count = 0;
+        for (QueryMeters meters : metersByQuery.values()) {
+            totalMs += meters.latency.totalTime(TimeUnit.MILLISECONDS);
+            count += meters.latency.count();
+        }
+        return count > 0 ? totalMs / count : 0.0;
+    }
+
+    private QueryMeters createMeters(String queryName) {
+        return new QueryMeters(
+                queryName,
+                Timer.builder("stock.db.query")
+                        .description("Repository call latency")
+                        .tag("query", queryName)
+                        .tag("outcome", "success")
+                        .publishPercentiles(0.5, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                Timer.builder("stock.db.query")
+                        .description("Repository call latency")
+                        .tag("query", queryName)
+                        .tag("outcome", "error")
+                        .register(meterRegistry),
+                DistributionSummary.builder("stock.db.query.rows")
+                        .description("Rows returned per repository call")
+                        .tag("query", queryName)
+                        .register(meterRegistry),
+                Timer.builder("stock.db.pool.wait")
+                        .description("Connection-pool checkout time spent inside a repository call")
+                        .tag("query", queryName)
+                        .register(meterRegistry));
+    }
+
+    // -1 when the method returns nothing row-like (void, e.g. insertTick)
+    private static long countRows(Object result) {
+        if (result == null) {
+            return -1;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return 1;
+    }
+
+    private static String parameterShapes(Object[] arguments) {
+        StringJoiner shapes = new StringJoiner(", ", "(", ")");
+        for (Object argument : arguments) {
+            if (argument == null) {
+                shapes.add("null");
+            } else if (argument instanceof Collection<?> collection) {
+                shapes.add(argument.getClass().getSimpleName() + "[" + collection.size() + "]");
+            } else if (argument instanceof CharSequence text) {
+                shapes.add("String(" + text.length() + ")");
+            } else {
+                shapes.add(argument.getClass().getSimpleName());
+            }
+        }
+        return shapes.toString();
+    }
+
+    // One per thread, reused by every call on it
+    private static final class QueryCall {
+        private long poolWaitNanos;
+        private boolean active;
+    }
+
+    public record QueryMeters(String name, Timer latency, Timer failures, DistributionSummary rows, Timer poolWait) {
+    }
+}
@@ -6,12 +6,13 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface StockPriceRepository extends JpaRepository<StockPrice, Long> {
+public interface StockPriceRepository extends JpaRepository<StockPrice, Long>, StockPriceRepositoryCustom {
 
     Optional<StockPrice> findTopBySymbolOrderByTimestampDesc(String symbol);
     
@@ -41,12 +42,88 @@ public interface StockPriceRepository extends JpaRepository<StockPrice, Long> {
                                       @Param("startTime") Instant startTime,
                                       @Param("endTime") Instant endTime);
     
+    // Bucketed OHLCV queries. Each returns rows of (bucket, open, high, low, close, volume);
+    // bucketWidth is an interval literal such as "PT5M" and must be a multiple of the source bar.
+    
+    @Query(value = "SELECT time_bucket(CAST(:bucketWidth AS INTERVAL), timestamp) AS bucket, " +
+            "first(price, timestamp) AS open, " +
+            "max(price) AS high, " +
+            "min(price) AS low, " +
+            "last(price, timestamp) AS close, " +
+            "sum(volume) AS volume " +
+            "FROM stock_prices " +
+            "WHERE symbol = :symbol AND timestamp >= :startTime AND timestamp <= :endTime " +
+            "GROUP BY 1 " +
+            "ORDER BY 1 ASC", nativeQuery = true)
+    List<Object[]> findRawCandles(@Param("symbol") String symbol,
+                                  @Param("bucketWidth") String bucketWidth,
+                                  @Param("startTime") Instant startTime,
+                                  @Param("endTime") Instant endTime);
+    
+    @Query(value = "SELECT time_bucket(CAST(:bucketWidth AS INTERVAL), bucket) AS bucket, " +
+            "first(open, bucket) AS open, " +
+            "max(high) AS high, " +
+            "min(low) AS low, " +
+            "last(close, bucket) AS close, " +
+            "sum(volume) AS volume " +
+            "FROM stock_prices_1m " +
+            "WHERE symbol = :symbol AND bucket >= :startTime AND bucket <= :endTime " +
+            "GROUP BY 1 " +
+            "ORDER BY 1 ASC", nativeQuery = true)
+    List<Object[]> findMinuteCandles(@Param("symbol") String symbol,
+                                     @Param("bucketWidth") String bucketWidth,
+                                     @Param("startTime") Instant startTime,
+                                     @Param("endTime") Instant endTime);
+    
+    @Query(value = "SELECT time_bucket(CAST(:bucketWidth AS INTERVAL), bucket) AS bucket, " +
+            "first(open, bucket) AS open, " +
+            "max(high) AS high, " +
+            "min(low) AS low, " +
+            "last(close, bucket) AS close, " +
+            "sum(volume) AS volume " +
+            "FROM stock_prices_1h " +
+            "WHERE symbol = :symbol AND bucket >= :startTime AND bucket <= :endTime " +
+            "GROUP BY 1 " +
+            "ORDER BY 1 ASC", nativeQuery = true)
+    List<Object[]> findHourlyCandles(@Param("symbol") String symbol,
+                                     @Param("bucketWidth") String bucketWidth,
+                                     @Param("startTime") Instant startTime,
+                                     @Param("endTime") Instant endTime);
+    
+    @Query(value = "SELECT time_bucket(CAST(:bucketWidth AS INTERVAL), bucket) AS bucket, " +
+            "first(open, bucket) AS open, " +
+            "max(high) AS high, " +
+            "min(low) AS low, " +
+            "last(close, bucket) AS close, " +
+            "sum(volume) AS volume " +
+            "FROM stock_prices_1d " +
+            "WHERE symbol = :symbol AND bucket >= :startTime AND bucket <= :endTime " +
+            "GROUP BY 1 " +
+            "ORDER BY 1 ASC", nativeQuery = true)
+    List<Object[]> findDailyCandles(@Param("symbol") String symbol,
+                                    @Param("bucketWidth") String bucketWidth,
+                                    @Param("startTime") Instant startTime,
+                                    @Param("endTime") Instant endTime);
+    
+    // Route to the coarsest continuous aggregate that evenly divides the requested bucket (weeks
+    // and multi-day widths read the daily one), falling back to raw ticks for sub-minute or irregular intervals
+    default List<Object[]> findCandles(String symbol, Duration bucketWidth, Instant startTime, Instant endTime) {
+        String width = bucketWidth.toString();
+        long seconds = bucketWidth.getSeconds();
+        if (bucketWidth.getNano() == 0 && seconds > 0) {
+            if (seconds % Duration.ofDays(1).getSeconds() == 0) {
+                return findDailyCandles(symbol, width, startTime, endTime);
+            }
+            if (seconds % Duration.ofHours(1).getSeconds() == 0) {
+                return findHourlyCandles(symbol, width, startTime, endTime);
+            }
+            if (seconds % Duration.ofMinutes(1).getSeconds() == 0) {
+                return findMinuteCandles(symbol, width, startTime, endTime);
+            }
+        }
+        return findRawCandles(symbol, width, startTime, endTime);
+    }
+    
     @Query(value = "SELECT COUNT(*) FROM stock_prices", nativeQuery = true)
     Long countTotalPricePoints();
-    
-    @Query(value = "SELECT AVG(query_time) FROM " +
-            "(SELECT EXTRACT(EPOCH FROM (clock_timestamp() - statement_timestamp())) * 1000 AS query_time " +
-            "FROM stock_prices WHERE symbol = :symbol ORDER BY timestamp DESC LIMIT 1000) AS subquery", 
-            nativeQuery = true)
-    Double calculateAverageQueryTime(@Param("symbol") String symbol);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.financialdatastreaming.repository;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+
+public interface StockPriceRepositoryCustom {
+
+    // Insert a tick straight from the ingest DTO, bypassing entity mapping and the persistence context
+    void insertTick(StockPriceDto tick);
+}
@@ -0,0 +1,46 @@
+package com.example.financialdatastreaming.repository;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+@RequiredArgsConstructor
+public class StockPriceRepositoryImpl implements StockPriceRepositoryCustom {
+
+    private static final String INSERT_TICK_SQL = "INSERT INTO stock_prices " +
+            "(symbol, price, open, high, low, close, volume, timestamp, change_percent, change_amount, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertTick(StockPriceDto tick) {
+        jdbcTemplate.update(INSERT_TICK_SQL, ps -> bindTick(ps, tick));
+    }
+
+    private static void bindTick(PreparedStatement ps, StockPriceDto tick) throws SQLException {
+        ps.setString(1, tick.getSymbol());
+        ps.setBigDecimal(2, tick.getPrice());
+        ps.setBigDecimal(3, tick.getOpen());
+        ps.setBigDecimal(4, tick.getHigh());
+        ps.setBigDecimal(5, tick.getLow());
+        ps.setBigDecimal(6, tick.getClose());
+        ps.setLong(7, tick.getVolume());
+        ps.setTimestamp(8, Timestamp.from(tick.getTimestamp()));
+        if (tick.getChangePercent() != null) {
+            ps.setBigDecimal(9, tick.getChangePercent());
+        } else {
+            ps.setNull(9, Types.NUMERIC);
+        }
+        if (tick.getChangeAmount() != null) {
+            ps.setBigDecimal(10, tick.getChangeAmount());
+        } else {
+            ps.setNull(10, Types.NUMERIC);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.MarketRankingsDto;
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Incremental cross-symbol rankings. Each ranking is an ordered set keyed by
+ * (value, symbol); a tick removes the symbol's previous entry and inserts the new
+ * one, so an update costs O(log n) plus an O(N) scan of the top N. Gainers and
+ * losers are read from opposite ends of the same set, limited to symbols that are
+ * actually up or down, so one symbol never appears in both. Rankings are pushed on
+ * {@code /topic/rankings} only when the membership or order of a top-N list changes.
+ * The lists are only rebuilt when a tick's old or new entry falls within a published
+ * list's cutoff, so most ticks on a large universe allocate nothing here.
+ */
+@Service
+public class MarketRankingService {
+
+    private static final Comparator<RankEntry> BY_VALUE_DESC = Comparator
+            .comparingDouble(RankEntry::value).reversed()
+            .thenComparing(RankEntry::symbol);
+
+    // Sign filters for topSymbols
+    private static final int ANY = 0;
+    private static final int UP = 1;
+    private static final int DOWN = -1;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SymbolRegistry symbolRegistry;
+
+    // Gainers are the head of changeFromOpen, losers its tail
+    private final TreeSet<RankEntry> changeFromOpen = new TreeSet<>(BY_VALUE_DESC);
+    private final TreeSet<RankEntry> volume = new TreeSet<>(BY_VALUE_DESC);
+    private final TreeSet<RankEntry> intradayRange = new TreeSet<>(BY_VALUE_DESC);
+    // Indexed by SymbolRegistry id; guarded by this
+    private final SymbolRanks[] ranksBySymbol;
+
+    // Symbol order of the last published top-N lists
+    private List<String> lastGainers = List.of();
+    private List<String> lastLosers = List.of();
+    private List<String> lastMostActive = List.of();
+    private List<String> lastWidestRange = List.of();
+
+    // Last entry of each published list when it is full, else null (any qualifying entry gets in)
+    private RankEntry gainersCutoff;
+    private RankEntry losersCutoff;
+    private RankEntry mostActiveCutoff;
+    private RankEntry widestRangeCutoff;
+
+    @Value("${app.rankings.topic:/topic/rankings}")
+    private String rankingsTopic;
+
+    @Value("${app.rankings.size:10}")
+    private int topN;
+
+    public MarketRankingService(SimpMessagingTemplate messagingTemplate, SymbolRegistry symbolRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.symbolRegistry = symbolRegistry;
+        this.ranksBySymbol = new SymbolRanks[symbolRegistry.capacity()];
+    }
+
+    public void update(StockPriceDto stockPriceDto) {
+        if (stockPriceDto.getPrice() == null || stockPriceDto.getOpen() == null
+                || stockPriceDto.getOpen().signum() <= 0) {
+            return;
+        }
+        double open = stockPriceDto.getOpen().doubleValue();
+        double change = (stockPriceDto.getPrice().doubleValue() - open) / open * 100.0;
+        double range = stockPriceDto.getHigh() != null && stockPriceDto.getLow() != null
+                ? (stockPriceDto.getHigh().doubleValue() - stockPriceDto.getLow().doubleValue()) / open * 100.0
+                : 0.0;
+        long vol = stockPriceDto.getVolume() != null ? stockPriceDto.getVolume() : 0L;
+        int symbolId = symbolRegistry.idOf(stockPriceDto);
+
+        MarketRankingsDto changed;
+        synchronized (this) {
+            SymbolRanks ranks = ranksBySymbol[symbolId];
+            if (ranks == null) {
+                ranks = ranksBySymbol[symbolId] = new SymbolRanks();
+            }
+            // Keep the newest tick by timestamp, as MarketState does; late, replayed or restored ticks do not replace it
+            if (ranks.timestamp != null && stockPriceDto.getTimestamp().isBefore(ranks.timestamp)) {
+                return;
+            }
+            ranks.timestamp = stockPriceDto.getTimestamp();
+            RankEntry previousChange = ranks.change;
+            RankEntry previousVolume = ranks.volume;
+            RankEntry previousRange = ranks.range;
+            ranks.price = stockPriceDto.getPrice();
+            ranks.change = replace(changeFromOpen, previousChange, stockPriceDto.getSymbol(), change);
+            ranks.volume = replace(volume, previousVolume, stockPriceDto.getSymbol(), vol);
+            ranks.range = replace(intradayRange, previousRange, stockPriceDto.getSymbol(), range);
+
+            boolean affected = moved(previousChange, ranks.change, gainersCutoff, UP)
+                    || moved(previousChange, ranks.change, losersCutoff, DOWN)
+                    || moved(previousVolume, ranks.volume, mostActiveCutoff, ANY)
+                    || moved(previousRange, ranks.range, widestRangeCutoff, ANY);
+            changed = affected ? snapshotIfChanged() : null;
+        }
+
+        if (changed != null) {
+            messagingTemplate.convertAndSend(rankingsTopic, changed);
+        }
+    }
+
+    public synchronized MarketRankingsDto getRankings() {
+        return buildRankings(topSymbols(changeFromOpen.iterator(), UP),
+                topSymbols(changeFromOpen.descendingIterator(), DOWN),
+                topSymbols(volume.iterator(), ANY),
+                topSymbols(intradayRange.iterator(), ANY));
+    }
+
+    private RankEntry replace(NavigableSet<RankEntry> ranking, RankEntry previous, String symbol, double value) {
+        if (previous != null) {
+            if (previous.value() == value) {
+                return previous;
+            }
+            ranking.remove(previous);
+        }
+        RankEntry entry = new RankEntry(symbol, value);
+        ranking.add(entry);
+        return entry;
+    }
+
+    // Whether an entry change can alter a top list: the old or new entry is inside its cutoff
+    private static boolean moved(RankEntry previous, RankEntry current, RankEntry cutoff, int sign) {
+        return previous != current && (withinTop(previous, cutoff, sign) || withinTop(current, cutoff, sign));
+    }
+
+    private static boolean withinTop(RankEntry entry, RankEntry cutoff, int sign) {
+        if (entry == null || (sign != ANY && Math.signum(entry.value()) != sign)) {
+            return false;
+        }
+        if (cutoff == null) {
+            return true;
+        }
+        // Losers are read from the descending end, so "inside" is the other side of the cutoff
+        int order = BY_VALUE_DESC.compare(entry, cutoff);
+        return sign == DOWN ? order >= 0 : order <= 0;
+    }
+
+    // Caller holds the lock
+    private MarketRankingsDto snapshotIfChanged() {
+        List<String> gainers = topSymbols(changeFromOpen.iterator(), UP);
+        List<String> losers = topSymbols(changeFromOpen.descendingIterator(), DOWN);
+        List<String> mostActive = topSymbols(volume.iterator(), ANY);
+        List<String> widestRange = topSymbols(intradayRange.iterator(), ANY);
+        gainersCutoff = cutoff(gainers, ranks -> ranks.change);
+        losersCutoff = cutoff(losers, ranks -> ranks.change);
+        mostActiveCutoff = cutoff(mostActive, ranks -> ranks.volume);
+        widestRangeCutoff = cutoff(widestRange, ranks -> ranks.range);
+
+        if (gainers.equals(lastGainers) && losers.equals(lastLosers)
+                && mostActive.equals(lastMostActive) && widestRange.equals(lastWidestRange)) {
+            return null;
+        }
+        lastGainers = gainers;
+        lastLosers = losers;
+        lastMostActive = mostActive;
+        lastWidestRange = widestRange;
+        return buildRankings(gainers, losers, mostActive, widestRange);
+    }
+
+    private MarketRankingsDto buildRankings(List<String> gainers, List<String> losers,
+                                            List<String> mostActive, List<String> widestRange) {
+        return MarketRankingsDto.builder()
+                .topGainers(toEntries(gainers, ranks -> ranks.change))
+                .topLosers(toEntries(losers, ranks -> ranks.change))
+                .mostActive(toEntries(mostActive, ranks -> ranks.volume))
+                .widestRange(toEntries(widestRange, ranks -> ranks.range))
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    private RankEntry cutoff(List<String> symbols, Function<SymbolRanks, RankEntry> ranking) {
+        if (symbols.size() < topN) {
+            return null;
+        }
+        return ranking.apply(ranksBySymbol[symbolRegistry.find(symbols.get(symbols.size() - 1))]);
+    }
+
+    // Iterates from the best end; stops at the first entry outside the wanted sign since the set is ordered
+    private List<String> topSymbols(Iterator<RankEntry> it, int sign) {
+        List<String> symbols = new ArrayList<>(topN);
+        while (it.hasNext() && symbols.size() < topN) {
+            RankEntry entry = it.next();
+            if (sign != ANY && Math.signum(entry.value()) != sign) {
+                break;
+            }
+            symbols.add(entry.symbol());
+        }
+        return symbols;
+    }
+
+    private List<MarketRankingsDto.Entry> toEntries(List<String> symbols, Function<SymbolRanks, RankEntry> ranking) {
+        List<MarketRankingsDto.Entry> entries = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            SymbolRanks ranks = ranksBySymbol[symbolRegistry.find(symbol)];
+            entries.add(new MarketRankingsDto.Entry(symbol, ranks.price, ranking.apply(ranks).value()));
+        }
+        return entries;
+    }
+
+    private record RankEntry(String symbol, double value) {
+    }
+
+    private static final class SymbolRanks {
+        private Instant timestamp;
+        private BigDecimal price;
+        private RankEntry change;
+        private RankEntry volume;
+        private RankEntry range;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the in-memory market state (latest ticks, applied Kafka offsets
+ * and the generator's random-walk prices) to a compact binary file and restores it on
+ * boot, before the Kafka listeners start. The consumer then reconciles the snapshot's
+ * offsets with the committed ones: it skips records the snapshot already covers, and
+ * replays committed records the snapshot missed into memory only.
+ */
+@Slf4j
+@Service
+public class MarketSnapshotService {
+
+    private static final int MAGIC = 0x4D4B5453; // "MKTS"
+    private static final int FORMAT_VERSION = 1;
+
+    private final MarketState marketState;
+    private final StockDataGenerator stockDataGenerator;
+    private final MarketRankingService marketRankingService;
+    private final Timer writeTimer;
+    private final Timer restoreTimer;
+
+    @Value("${app.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    @Value("${app.snapshot.path:./data/market-state.snapshot}")
+    private String snapshotPath;
+
+    @Value("${app.kafka.topics.stock-prices}")
+    private String stockPricesTopic;
+
+    public MarketSnapshotService(MarketState marketState, StockDataGenerator stockDataGenerator,
+                                 MarketRankingService marketRankingService, MeterRegistry meterRegistry) {
+        this.marketState = marketState;
+        this.stockDataGenerator = stockDataGenerator;
+        this.marketRankingService = marketRankingService;
+        this.writeTimer = Timer.builder("stock.snapshot.write").register(meterRegistry);
+        this.restoreTimer = Timer.builder("stock.snapshot.restore").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void restore() {
+        Path path = Paths.get(snapshotPath);
+        if (!snapshotEnabled || !Files.exists(path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.warn("Ignoring market snapshot {} with unknown format", path);
+                return;
+            }
+            long createdAt = in.readLong();
+            String topic = in.readUTF();
+
+            int partitions = in.readInt();
+            for (int i = 0; i < partitions; i++) {
+                int partition = in.readInt();
+                long offset = in.readLong();
+                // Offsets only apply to the topic they were recorded against
+                if (topic.equals(stockPricesTopic)) {
+                    marketState.restoreOffset(partition, offset);
+                }
+            }
+
+            int ticks = in.readInt();
+            for (int i = 0; i < ticks; i++) {
+                StockPriceDto tick = readTick(in);
+                marketState.update(tick);
+                marketRankingService.update(tick);
+            }
+
+            int generatorPrices = in.readInt();
+            Map<String, StockPriceDto> lastPrices = new HashMap<>(generatorPrices * 2);
+            for (int i = 0; i < generatorPrices; i++) {
+                StockPriceDto price = readTick(in);
+                lastPrices.put(price.getSymbol(), price);
+            }
+            stockDataGenerator.restoreLastPrices(lastPrices);
+            marketState.consumeDirty();
+
+            long elapsedNanos = System.nanoTime() - start;
+            restoreTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            log.info("Restored market snapshot from {} ({} ticks, {} generator prices, taken {}) in {}ms",
+                    path, ticks, generatorPrices, Instant.ofEpochMilli(createdAt), elapsedNanos / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to restore market snapshot from {}: {}", path, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.snapshot.interval-ms:10000}",
+            initialDelayString = "${app.snapshot.interval-ms:10000}")
+    public void scheduledSnapshot() {
+        if (snapshotEnabled && marketState.consumeDirty()) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        if (snapshotEnabled) {
+            writeSnapshot();
+        }
+    }
+
+    public void writeSnapshot() {
+        Path path = Paths.get(snapshotPath).toAbsolutePath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(path.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeUTF(stockPricesTopic);
+
+                Map<Integer, Long> offsets = marketState.getAppliedOffsets();
+                out.writeInt(offsets.size());
+                for (Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+
+                writeTicks(out, marketState.getLatestTicks());
+                writeTicks(out, stockDataGenerator.getLastPrices());
+            }
+            // Readers never see a partially written file
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            log.warn("Failed to write market snapshot to {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void writeTicks(DataOutputStream out, Map<String, StockPriceDto> ticks) throws IOException {
+        // Copy first: the maps are live and the count must match what follows
+        StockPriceDto[] values = ticks.values().toArray(new StockPriceDto[0]);
+        out.writeInt(values.length);
+        for (StockPriceDto tick : values) {
+            writeTick(out, tick);
+        }
+    }
+
+    private void writeTick(DataOutputStream out, StockPriceDto tick) throws IOException {
+        out.writeUTF(tick.getSymbol());
+        writeDecimal(out, tick.getPrice());
+        writeDecimal(out, tick.getOpen());
+        writeDecimal(out, tick.getHigh());
+        writeDecimal(out, tick.getLow());
+        writeDecimal(out, tick.getClose());
+        out.writeLong(tick.getVolume() != null ? tick.getVolume() : 0L);
+        out.writeLong(tick.getTimestamp().getEpochSecond());
+        out.writeInt(tick.getTimestamp().getNano());
+        writeDecimal(out, tick.getChangeAmount());
+        writeDecimal(out, tick.getChangePercent());
+    }
+
+    private StockPriceDto readTick(DataInputStream in) throws IOException {
+        return StockPriceDto.builder()
+                .symbol(in.readUTF())
+                .price(readDecimal(in))
+                .open(readDecimal(in))
+                .high(readDecimal(in))
+                .low(readDecimal(in))
+                .close(readDecimal(in))
+                .volume(in.readLong())
+                .timestamp(Instant.ofEpochSecond(in.readLong(), in.readInt()))
+                .changeAmount(readDecimal(in))
+                .changePercent(readDecimal(in))
+                .build();
+    }
+
+    // Presence flag, scale, then the length-prefixed unscaled value
+    private void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value == null) {
+            return;
+        }
+        out.writeInt(value.scale());
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory latest tick per symbol, maintained by the ingest path so that change
+ * calculation and latest-price reads do not go back to the database. Ticks are held
+ * in an array indexed by {@link SymbolRegistry} id. It also tracks the last applied
+ * offset per stock-prices partition this node owns, so a restored snapshot can be
+ * reconciled with Kafka on restart.
+ */
+@Component
+public class MarketState {
+
+    private final SymbolRegistry symbolRegistry;
+    private final AtomicReferenceArray<StockPriceDto> latestTicks;
+    private final ConcurrentMap<Integer, AtomicLong> appliedOffsets = new ConcurrentHashMap<>();
+    // Offsets read from a snapshot, reconciled with Kafka once, on the first assignment after the restore
+    private final ConcurrentMap<Integer, Long> restoredOffsets = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    public MarketState(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+        this.latestTicks = new AtomicReferenceArray<>(symbolRegistry.capacity());
+    }
+
+    // Lookup by name, e.g. from a request; unknown symbols are not registered
+    public StockPriceDto getLatest(String symbol) {
+        int symbolId = symbolRegistry.find(symbol);
+        return symbolId >= 0 ? latestTicks.get(symbolId) : null;
+    }
+
+    public StockPriceDto getLatest(int symbolId) {
+        return latestTicks.get(symbolId);
+    }
+
+    // Keep the newest tick by timestamp; late ticks (e.g. seeded history) do not replace it
+    public void update(StockPriceDto tick) {
+        int symbolId = symbolRegistry.idOf(tick);
+        StockPriceDto current;
+        do {
+            current = latestTicks.get(symbolId);
+            if (current != null && tick.getTimestamp().isBefore(current.getTimestamp())) {
+                break;
+            }
+        } while (!latestTicks.compareAndSet(symbolId, current, tick));
+        dirty = true;
+    }
+
+    public void recordOffset(int partition, long offset) {
+        AtomicLong applied = appliedOffsets.get(partition);
+        if (applied == null) {
+            applied = appliedOffsets.computeIfAbsent(partition, p -> new AtomicLong(-1));
+        }
+        applied.accumulateAndGet(offset, Math::max);
+        dirty = true;
+    }
+
+    public void restoreOffset(int partition, long offset) {
+        recordOffset(partition, offset);
+        restoredOffsets.put(partition, offset);
+    }
+
+    // The restored offset for a partition, handed out once; -1 if none or already reconciled
+    public long takeRestoredOffset(int partition) {
+        Long restored = restoredOffsets.remove(partition);
+        return restored != null ? restored : -1;
+    }
+
+    // Another consumer owns the partition now, so whatever is recorded here goes stale
+    public void forgetPartition(int partition) {
+        appliedOffsets.remove(partition);
+        restoredOffsets.remove(partition);
+        dirty = true;
+    }
+
+    // Last offset applied for a partition, or -1 if none is known
+    public long getAppliedOffset(int partition) {
+        AtomicLong applied = appliedOffsets.get(partition);
+        return applied != null ? applied.get() : -1;
+    }
+
+    public Map<Integer, Long> getAppliedOffsets() {
+        Map<Integer, Long> offsets = new HashMap<>();
+        appliedOffsets.forEach((partition, offset) -> offsets.put(partition, offset.get()));
+        return offsets;
+    }
+
+    // Returns whether anything changed since the last call, clearing the flag
+    public boolean consumeDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    // Copy keyed by symbol, for snapshots and other cold paths
+    public Map<String, StockPriceDto> getLatestTicks() {
+        Map<String, StockPriceDto> ticks = new HashMap<>();
+        for (int id = 0, n = symbolRegistry.size(); id < n; id++) {
+            StockPriceDto tick = latestTicks.get(id);
+            if (tick != null) {
+                ticks.put(tick.getSymbol(), tick);
+            }
+        }
+        return Collections.unmodifiableMap(ticks);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.financialdatastreaming.service;
+
+import java.util.Arrays;
+
+/**
+ * Price-level book for one symbol. Each side is a pair of parallel primitive arrays
+ * kept sorted best-first, so lookups are a binary search and updates shift at most
+ * the levels behind the touched one. Prices are fixed-point in {@link #PRICE_SCALE}
+ * decimal places. Not thread-safe; callers synchronize on the instance.
+ */
+final class OrderBook {
+
+    static final int PRICE_SCALE = 4;
+
+    final PriceLevels bids = new PriceLevels(true);
+    final PriceLevels asks = new PriceLevels(false);
+    long sequence;
+    boolean dirty; // Changed since the last published snapshot
+    boolean stale; // Missed events; incremental updates are dropped until a full snapshot arrives
+
+    void clear() {
+        bids.clear();
+        asks.clear();
+    }
+
+    static final class PriceLevels {
+        private final boolean descending;
+        private long[] prices = new long[32];
+        private long[] sizes = new long[32];
+        private int count;
+
+        PriceLevels(boolean descending) {
+            this.descending = descending;
+        }
+
+        void set(long price, long size) {
+            int index = search(price);
+            if (index >= 0) {
+                sizes[index] = size;
+                return;
+            }
+            int insertAt = -(index + 1);
+            if (count == prices.length) {
+                prices = Arrays.copyOf(prices, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+            System.arraycopy(prices, insertAt, prices, insertAt + 1, count - insertAt);
+            System.arraycopy(sizes, insertAt, sizes, insertAt + 1, count - insertAt);
+            prices[insertAt] = price;
+            sizes[insertAt] = size;
+            count++;
+        }
+
+        void remove(long price) {
+            int index = search(price);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(prices, index + 1, prices, index, count - index - 1);
+            System.arraycopy(sizes, index + 1, sizes, index, count - index - 1);
+            count--;
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        int count() {
+            return count;
+        }
+
+        // Level i counted from the best price
+        long priceAt(int i) {
+            return prices[i];
+        }
+
+        long sizeAt(int i) {
+            return sizes[i];
+        }
+
+        // Same contract as Arrays.binarySearch, in best-first order
+        private int search(long price) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midPrice = prices[mid];
+                if (midPrice == price) {
+                    return mid;
+                }
+                if (descending ? midPrice > price : midPrice < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Feeds depth events into the order book engine. Books are in-memory only, so every
+ * node reads the whole topic through its own consumer group.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderBookConsumer {
+
+    private final OrderBookEngine orderBookEngine;
+
+    @KafkaListener(topics = "${app.kafka.topics.order-book}", groupId = "order-book-${app.node-id}",
+            containerFactory = "orderBookListenerContainerFactory")
+    public void consume(OrderBookEventDto event) {
+        try {
+            orderBookEngine.apply(event);
+        } catch (Exception e) {
+            log.error("Error applying order book event: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
+import com.example.financialdatastreaming.dto.OrderBookSnapshotDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maintains per-symbol L2 books from depth events and publishes conflated top-N
+ * snapshots: however many events hit a symbol within a publish interval, its
+ * subscribers on {@code /topic/book/{symbol}} receive at most one snapshot.
+ * Events carry absolute level sizes, so a book that misses or replays part of the
+ * stream cannot be patched: on a sequence gap it is cleared and marked stale, incremental
+ * events are dropped, and it is rebuilt from the publisher's next periodic full-depth
+ * {@code SNAPSHOT} event. A book first seen mid-stream (a node starting at the latest
+ * offset) starts out stale the same way; sequence 1 means the publisher (re)started, so
+ * the book starts over from that event. Stale books are published and served flagged.
+ */
+@Service
+public class OrderBookEngine {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StockTopicDestinations topicDestinations;
+    private final SymbolRegistry symbolRegistry;
+    // Indexed by SymbolRegistry id
+    private final AtomicReferenceArray<OrderBook> books;
+    private final Counter appliedEvents;
+    private final Counter gapResyncs;
+    private final Counter regressionResyncs;
+    private final Counter snapshotRebuilds;
+    private final Counter staleDrops;
+
+    @Value("${app.order-book.depth:10}")
+    private int publishedDepth;
+
+    public OrderBookEngine(SimpMessagingTemplate messagingTemplate, StockTopicDestinations topicDestinations,
+                           SymbolRegistry symbolRegistry, MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.topicDestinations = topicDestinations;
+        this.symbolRegistry = symbolRegistry;
+        this.books = new AtomicReferenceArray<>(symbolRegistry.capacity());
+        this.appliedEvents = Counter.builder("stock.orderbook.events").register(meterRegistry);
+        this.gapResyncs = Counter.builder("stock.orderbook.resyncs").tag("reason", "gap").register(meterRegistry);
+        this.regressionResyncs = Counter.builder("stock.orderbook.resyncs").tag("reason", "regression")
+                .register(meterRegistry);
+        this.snapshotRebuilds = Counter.builder("stock.orderbook.snapshot.rebuilds")
+                .description("Books replaced by a full-depth snapshot event")
+                .register(meterRegistry);
+        this.staleDrops = Counter.builder("stock.orderbook.stale.drops")
+                .description("Incremental events dropped while a book waited for a snapshot")
+                .register(meterRegistry);
+    }
+
+    public void apply(OrderBookEventDto event) {
+        int symbolId = symbolRegistry.idOf(event.getSymbol());
+        OrderBook book = books.get(symbolId);
+        if (book == null) {
+            OrderBook created = new OrderBook();
+            book = books.compareAndSet(symbolId, null, created) ? created : books.get(symbolId);
+        }
+        if (event.getAction() == OrderBookEventDto.Action.SNAPSHOT) {
+            applySnapshot(book, event);
+            return;
+        }
+        long price = event.getPrice().movePointRight(OrderBook.PRICE_SCALE).longValue();
+
+        synchronized (book) {
+            if (event.getSequence() != null) {
+                long sequence = event.getSequence();
+                if (sequence == 1) {
+                    // The publisher (re)started, so nothing precedes this event
+                    if (book.sequence != 0) {
+                        regressionResyncs.increment();
+                    }
+                    book.clear();
+                    book.stale = false;
+                } else if (book.stale) {
+                    staleDrops.increment();
+                    return;
+                } else if (sequence != book.sequence + 1) {
+                    // Joined mid-stream, missed events or saw a redelivery: the levels are suspect until a snapshot
+                    if (book.sequence != 0) {
+                        (sequence > book.sequence ? gapResyncs : regressionResyncs).increment();
+                    }
+                    book.clear();
+                    book.stale = true;
+                    book.dirty = true;
+                    staleDrops.increment();
+                    return;
+                }
+                book.sequence = sequence;
+            }
+            OrderBook.PriceLevels levels = event.getSide() == OrderBookEventDto.Side.BID ? book.bids : book.asks;
+            if (event.getAction() == OrderBookEventDto.Action.DELETE || event.getSize() == null
+                    || event.getSize() <= 0) {
+                levels.remove(price);
+            } else {
+                levels.set(price, event.getSize());
+            }
+            book.dirty = true;
+        }
+        appliedEvents.increment();
+    }
+
+    // A snapshot no newer than a consistent book adds nothing; otherwise it replaces the book
+    private void applySnapshot(OrderBook book, OrderBookEventDto event) {
+        long sequence = event.getSequence() != null ? event.getSequence() : 0;
+        synchronized (book) {
+            if (!book.stale && book.sequence != 0 && sequence <= book.sequence) {
+                return;
+            }
+            book.clear();
+            setLevels(book.bids, event.getBids());
+            setLevels(book.asks, event.getAsks());
+            book.sequence = sequence;
+            book.stale = false;
+            book.dirty = true;
+        }
+        snapshotRebuilds.increment();
+    }
+
+    private static void setLevels(OrderBook.PriceLevels side, List<OrderBookSnapshotDto.Level> levels) {
+        if (levels == null) {
+            return;
+        }
+        for (OrderBookSnapshotDto.Level level : levels) {
+            if (level.getSize() > 0) {
+                side.set(level.getPrice().movePointRight(OrderBook.PRICE_SCALE).longValue(), level.getSize());
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.order-book.publish-interval-ms:100}")
+    public void publishSnapshots() {
+        for (int id = 0, n = symbolRegistry.size(); id < n; id++) {
+            OrderBook book = books.get(id);
+            if (book == null) {
+                continue;
+            }
+            OrderBookSnapshotDto snapshot;
+            synchronized (book) {
+                if (!book.dirty) {
+                    continue;
+                }
+                book.dirty = false;
+                snapshot = snapshot(symbolRegistry.symbolOf(id), book);
+            }
+            messagingTemplate.convertAndSend(topicDestinations.forBook(id), snapshot);
+        }
+    }
+
+    public OrderBookSnapshotDto getSnapshot(String symbol) {
+        int symbolId = symbolRegistry.find(symbol);
+        OrderBook book = symbolId >= 0 ? books.get(symbolId) : null;
+        if (book == null) {
+            throw new NoSuchElementException("No order book found for symbol: " + symbol);
+        }
+        return snapshot(symbol, book);
+    }
+
+    private OrderBookSnapshotDto snapshot(String symbol, OrderBook book) {
+        synchronized (book) {
+            List<OrderBookSnapshotDto.Level> bids = levels(book.bids);
+            List<OrderBookSnapshotDto.Level> asks = levels(book.asks);
+
+            long bidSize = 0;
+            for (OrderBookSnapshotDto.Level level : bids) {
+                bidSize += level.getSize();
+            }
+            long askSize = 0;
+            for (OrderBookSnapshotDto.Level level : asks) {
+                askSize += level.getSize();
+            }
+
+            OrderBookSnapshotDto.OrderBookSnapshotDtoBuilder snapshot = OrderBookSnapshotDto.builder()
+                    .symbol(symbol)
+                    .bids(bids)
+                    .asks(asks)
+                    .imbalance(bidSize + askSize > 0 ? (double) (bidSize - askSize) / (bidSize + askSize) : 0.0)
+                    .sequence(book.sequence)
+                    .timestamp(System.currentTimeMillis())
+                    .stale(book.stale);
+
+            if (book.bids.count() > 0 && book.asks.count() > 0) {
+                long bestBid = book.bids.priceAt(0);
+                long bestAsk = book.asks.priceAt(0);
+                snapshot.spread(BigDecimal.valueOf(bestAsk - bestBid, OrderBook.PRICE_SCALE))
+                        .mid(BigDecimal.valueOf(bestAsk + bestBid, OrderBook.PRICE_SCALE)
+                                .divide(BigDecimal.valueOf(2)));
+            }
+            return snapshot.build();
+        }
+    }
+
+    private List<OrderBookSnapshotDto.Level> levels(OrderBook.PriceLevels side) {
+        int depth = Math.min(publishedDepth, side.count());
+        List<OrderBookSnapshotDto.Level> levels = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            levels.add(new OrderBookSnapshotDto.Level(
+                    BigDecimal.valueOf(side.priceAt(i), OrderBook.PRICE_SCALE), side.sizeAt(i)));
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded LRU cache of closed history segments. A segment is an aligned time slice
+ * of one symbol at one interval ("raw" ticks or a bucket width such as "PT5M");
+ * once its end is in the past it never changes, so it is cached until evicted by
+ * size or invalidated by a late tick falling inside it. Segments are aligned to
+ * multiples of their span since the epoch, so the segment holding a timestamp is
+ * found by arithmetic rather than by scanning the cache.
+ *
+ * A load races with invalidation: a query that read the database before a late tick
+ * was written must not put its result back after the tick evicted the segment. Loads
+ * take the segment's generation before querying and {@link #put} refuses a result whose
+ * generation has since been bumped by {@link #evictCovering}. Generations are kept in
+ * hashed stripes rather than per key, so a collision only skips caching one load.
+ */
+@Component
+public class PriceHistoryCache {
+
+    // Rough retained size of one StockPriceDto with its BigDecimal and Instant fields
+    static final int ESTIMATED_BYTES_PER_PRICE = 400;
+    private static final int SEGMENT_OVERHEAD_BYTES = 128;
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final LinkedHashMap<SegmentKey, Segment> segments = new LinkedHashMap<>(256, 0.75f, true);
+    // Segment span in seconds per interval seen so far ("raw", "PT1M", ...); a handful of entries
+    private final Map<String, Long> spanSecondsByInterval = new ConcurrentHashMap<>();
+    // Bumped for a segment whenever a late tick invalidates it, guarded by this
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final long maxBytes;
+    private long currentBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter segmentQueries;
+    private final Counter staleLoads;
+
+    public PriceHistoryCache(MeterRegistry meterRegistry,
+                             @Value("${app.history-cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("stock.history.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("stock.history.cache.misses").register(meterRegistry);
+        this.evictions = Counter.builder("stock.history.cache.evictions").register(meterRegistry);
+        this.segmentQueries = Counter.builder("stock.history.db.queries")
+                .description("Database queries issued to fill history segments")
+                .register(meterRegistry);
+        this.staleLoads = Counter.builder("stock.history.cache.stale.loads")
+                .description("Loaded segments not cached because a late tick invalidated them mid-load")
+                .register(meterRegistry);
+        Gauge.builder("stock.history.cache.bytes", this, PriceHistoryCache::getCurrentBytes)
+                .description("Estimated heap held by cached history segments")
+                .register(meterRegistry);
+        Gauge.builder("stock.history.cache.segments", this, PriceHistoryCache::size)
+                .register(meterRegistry);
+    }
+
+    public synchronized Segment get(SegmentKey key) {
+        Segment segment = segments.get(key);
+        if (segment != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return segment;
+    }
+
+    public synchronized boolean contains(SegmentKey key) {
+        return segments.containsKey(key);
+    }
+
+    // Taken before querying a segment; registers the interval so a late tick during the load bumps it
+    public synchronized long generation(SegmentKey key, long spanSeconds) {
+        spanSecondsByInterval.putIfAbsent(key.interval(), spanSeconds);
+        return generations[stripe(key)];
+    }
+
+    // Caches the segment unless it was invalidated after loadGeneration was taken; returns it either way
+    public synchronized Segment put(SegmentKey key, long spanSeconds, List<StockPriceDto> prices, long loadGeneration) {
+        spanSecondsByInterval.putIfAbsent(key.interval(), spanSeconds);
+        Segment segment = new Segment(prices);
+        if (generations[stripe(key)] != loadGeneration) {
+            staleLoads.increment();
+            return segment;
+        }
+        Segment previous = segments.put(key, segment);
+        if (previous != null) {
+            currentBytes -= previous.getWeight();
+        }
+        currentBytes += segment.getWeight();
+
+        // Evict least recently used segments until we are back under budget
+        Iterator<Map.Entry<SegmentKey, Segment>> it = segments.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<SegmentKey, Segment> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().getWeight();
+            it.remove();
+            evictions.increment();
+        }
+        return segment;
+    }
+
+    // Drop the cached segments (one per interval) that contain a late tick's timestamp
+    public void evictCovering(String symbol, long epochSecond) {
+        if (spanSecondsByInterval.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Long> interval : spanSecondsByInterval.entrySet()) {
+                long span = interval.getValue();
+                SegmentKey key = new SegmentKey(symbol, interval.getKey(), Math.floorDiv(epochSecond, span) * span);
+                generations[stripe(key)]++;
+                Segment removed = segments.remove(key);
+                if (removed != null) {
+                    currentBytes -= removed.getWeight();
+                }
+            }
+        }
+    }
+
+    public void recordSegmentQuery() {
+        segmentQueries.increment();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int size() {
+        return segments.size();
+    }
+
+    private static int stripe(SegmentKey key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    public record SegmentKey(String symbol, String interval, long segmentStartEpochSecond) {
+    }
+
+    @Getter
+    public static final class Segment {
+        private final List<StockPriceDto> prices;
+        private final int digest;
+        private final long weight;
+
+        Segment(List<StockPriceDto> prices) {
+            this.prices = Collections.unmodifiableList(prices);
+            this.digest = prices.hashCode();
+            this.weight = SEGMENT_OVERHEAD_BYTES + (long) prices.size() * ESTIMATED_BYTES_PER_PRICE;
+        }
+    }
+}
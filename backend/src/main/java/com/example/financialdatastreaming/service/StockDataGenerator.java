@@ -1,9 +1,14 @@
 package com.example.financialdatastreaming.service;
 
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
+import com.example.financialdatastreaming.dto.OrderBookSnapshotDto;
 import com.example.financialdatastreaming.dto.StockPriceDto;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -11,11 +16,15 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Slf4j
 @Service
@@ -23,13 +32,21 @@ import java.util.concurrent.ConcurrentHashMap;
 public class StockDataGenerator {
 
     private final KafkaTemplate<String, StockPriceDto> kafkaTemplate;
+    private final KafkaTemplate<String, OrderBookEventDto> orderBookKafkaTemplate;
+    private final SymbolRegistry symbolRegistry;
     private final Random random = new Random();
     
-    private final Map<String, StockPriceDto> lastPrices = new ConcurrentHashMap<>();
+    // Indexed by SymbolRegistry id
+    private AtomicReferenceArray<StockPriceDto> lastPrices;
+    private AtomicReferenceArray<SimulatedBook> simulatedBooks;
+    private int[] symbolIds;
     
     @Value("${app.kafka.topics.stock-prices}")
     private String stockPricesTopic;
     
+    @Value("${app.kafka.topics.order-book}")
+    private String orderBookTopic;
+    
     @Value("${app.default-symbols}")
     private List<String> symbols;
     
@@ -42,19 +59,51 @@ public class StockDataGenerator {
     @Value("${app.data-generator.volatility:0.002}")
     private double volatility;
     
+    @Value("${app.data-generator.depth-events-per-tick:5}")
+    private int depthEventsPerTick;
+    
+    @Value("${app.data-generator.depth-levels:20}")
+    private int depthLevels;
+    
+    @Value("${app.data-generator.book-snapshot-interval-ms:1000}")
+    private long bookSnapshotIntervalMs;
+    
+    @Value("${app.data-generator.seed-history-days:0}")
+    private int seedHistoryDays;
+    
+    // Only touched by the depth update thread
+    private long lastBookSnapshotMillis;
+    
+    @PostConstruct
+    void registerSymbols() {
+        lastPrices = new AtomicReferenceArray<>(symbolRegistry.capacity());
+        simulatedBooks = new AtomicReferenceArray<>(symbolRegistry.capacity());
+        symbolIds = new int[symbols.size()];
+        for (int i = 0; i < symbolIds.length; i++) {
+            symbolIds[i] = symbolRegistry.idOf(symbols.get(i));
+        }
+    }
+    
     // Generate initial data on startup
+    @EventListener(ApplicationReadyEvent.class)
     public void generateInitialData() {
         if (!generatorEnabled) return;
         
         log.info("Generating initial stock price data for {} symbols", symbols.size());
         
-        // Generate initial price for each symbol
-        for (String symbol : symbols) {
+        // Generate initial price for each symbol not already restored from a snapshot
+        for (int symbolId : symbolIds) {
+            if (lastPrices.get(symbolId) != null) {
+                continue;
+            }
+            String symbol = symbolRegistry.symbolOf(symbolId);
+            
             // Slight variance in initial price for each symbol
             double basePrice = initialPrice * (0.5 + random.nextDouble());
             
             StockPriceDto initialPrice = createInitialPrice(symbol, basePrice);
-            lastPrices.put(symbol, initialPrice);
+            initialPrice.setSymbolId(symbolId);
+            lastPrices.set(symbolId, initialPrice);
             
             // Send to Kafka
             kafkaTemplate.send(stockPricesTopic, symbol, initialPrice);
@@ -68,13 +117,15 @@ public class StockDataGenerator {
     public void generateRealtimeUpdates() {
         if (!generatorEnabled) return;
         
-        for (String symbol : symbols) {
+        for (int symbolId : symbolIds) {
             if (random.nextDouble() < 0.7) { // 70% chance of update for each symbol
-                StockPriceDto lastPrice = lastPrices.get(symbol);
+                StockPriceDto lastPrice = lastPrices.get(symbolId);
                 
                 if (lastPrice != null) {
+                    String symbol = lastPrice.getSymbol();
                     StockPriceDto newPrice = generateNextPrice(lastPrice);
-                    lastPrices.put(symbol, newPrice);
+                    newPrice.setSymbolId(symbolId);
+                    lastPrices.set(symbolId, newPrice);
                     
                     // Send to Kafka with minimal latency
                     long startTime = System.nanoTime();
@@ -94,6 +145,64 @@ public class StockDataGenerator {
         }
     }
     
+    // Generate L2 depth updates around the last trade price, at a multiple of the trade rate.
+    // Every book-snapshot-interval-ms each book is also sent in full, from this same thread so the
+    // snapshot is ordered after the events it includes, for consumers that lost events to rebuild from
+    @Scheduled(fixedRate = 50)
+    public void generateDepthUpdates() {
+        if (!generatorEnabled) return;
+        
+        long now = System.currentTimeMillis();
+        boolean sendSnapshots = now - lastBookSnapshotMillis >= bookSnapshotIntervalMs;
+        if (sendSnapshots) {
+            lastBookSnapshotMillis = now;
+        }
+        for (int symbolId : symbolIds) {
+            StockPriceDto lastPrice = lastPrices.get(symbolId);
+            if (lastPrice == null) {
+                continue;
+            }
+            String symbol = lastPrice.getSymbol();
+            
+            long midCents = lastPrice.getPrice().movePointRight(2).longValue();
+            SimulatedBook book = simulatedBooks.get(symbolId);
+            if (book == null) {
+                book = new SimulatedBook(); // Only this scheduled thread creates books
+                simulatedBooks.set(symbolId, book);
+            }
+            
+            // Levels the last trade has moved through are removed first so the book never crosses
+            for (OrderBookEventDto event : book.removeCrossed(symbol, midCents)) {
+                orderBookKafkaTemplate.send(orderBookTopic, symbol, event);
+            }
+            for (int i = 0; i < depthEventsPerTick; i++) {
+                orderBookKafkaTemplate.send(orderBookTopic, symbol, book.nextEvent(symbol, midCents));
+            }
+            if (sendSnapshots) {
+                orderBookKafkaTemplate.send(orderBookTopic, symbol, book.snapshotEvent(symbol));
+            }
+        }
+    }
+    
+    // Copy keyed by symbol, for snapshots
+    public Map<String, StockPriceDto> getLastPrices() {
+        Map<String, StockPriceDto> prices = new HashMap<>();
+        for (int id = 0, n = symbolRegistry.size(); id < n; id++) {
+            StockPriceDto price = lastPrices.get(id);
+            if (price != null) {
+                prices.put(price.getSymbol(), price);
+            }
+        }
+        return prices;
+    }
+    
+    // Continue the random walk from previously generated prices instead of inventing new ones
+    public void restoreLastPrices(Map<String, StockPriceDto> prices) {
+        for (StockPriceDto price : prices.values()) {
+            lastPrices.set(symbolRegistry.idOf(price), price);
+        }
+    }
+    
     // Helper to create initial price
     private StockPriceDto createInitialPrice(String symbol, double basePrice) {
         BigDecimal price = BigDecimal.valueOf(basePrice).setScale(2, RoundingMode.HALF_UP);
@@ -149,10 +258,16 @@ public class StockDataGenerator {
                 .build();
     }
     
+    // Backfill on startup when configured, whether or not live generation is enabled
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedHistoryOnStartup() {
+        if (seedHistoryDays > 0) {
+            seedHistoricalData(seedHistoryDays);
+        }
+    }
+    
     // Seed database with historical data for backtesting
     public void seedHistoricalData(int days) {
-        if (!generatorEnabled) return;
-        
         log.info("Seeding historical data for {} days", days);
         
         Map<String, BigDecimal> symbolPrices = new HashMap<>();
@@ -198,6 +313,7 @@ public class StockDataGenerator {
                                 .close(newPrice)
                                 .volume(50000L + random.nextInt(100000))
                                 .timestamp(timestamp)
+                                .historical(true)
                                 .build();
                         
                         // Send historical data point to Kafka
@@ -215,4 +331,94 @@ public class StockDataGenerator {
         
         log.info("Finished seeding historical data");
     }
-}
\ No newline at end of file
+    
+    // Generator-side view of one symbol's book, used to emit consistent add/modify/delete events
+    private class SimulatedBook {
+        private final NavigableMap<Long, Long> bids = new TreeMap<>();
+        private final NavigableMap<Long, Long> asks = new TreeMap<>();
+        private long sequence;
+        
+        synchronized List<OrderBookEventDto> removeCrossed(String symbol, long midCents) {
+            List<OrderBookEventDto> events = new ArrayList<>();
+            removeLevels(symbol, OrderBookEventDto.Side.BID, bids.tailMap(midCents, true), events);
+            removeLevels(symbol, OrderBookEventDto.Side.ASK, asks.headMap(midCents, true), events);
+            return events;
+        }
+        
+        synchronized OrderBookEventDto nextEvent(String symbol, long midCents) {
+            boolean bid = random.nextBoolean();
+            OrderBookEventDto.Side side = bid ? OrderBookEventDto.Side.BID : OrderBookEventDto.Side.ASK;
+            NavigableMap<Long, Long> levels = bid ? bids : asks;
+            
+            double roll = random.nextDouble();
+            if (levels.size() < depthLevels || roll < 0.3) {
+                long offset = 1 + random.nextInt(depthLevels * 2);
+                long priceCents = bid ? midCents - offset : midCents + offset;
+                long size = 100L * (1 + random.nextInt(50));
+                OrderBookEventDto.Action action = levels.containsKey(priceCents)
+                        ? OrderBookEventDto.Action.MODIFY : OrderBookEventDto.Action.ADD;
+                levels.put(priceCents, size);
+                return event(symbol, side, action, priceCents, size);
+            }
+            
+            long priceCents = randomLevel(levels);
+            if (roll < 0.8) {
+                long size = Math.max(100L, levels.get(priceCents) + 100L * (random.nextInt(11) - 5));
+                levels.put(priceCents, size);
+                return event(symbol, side, OrderBookEventDto.Action.MODIFY, priceCents, size);
+            }
+            levels.remove(priceCents);
+            return event(symbol, side, OrderBookEventDto.Action.DELETE, priceCents, 0L);
+        }
+        
+        // The whole book at the sequence of the last event sent; does not advance the sequence
+        synchronized OrderBookEventDto snapshotEvent(String symbol) {
+            return OrderBookEventDto.builder()
+                    .symbol(symbol)
+                    .action(OrderBookEventDto.Action.SNAPSHOT)
+                    .bids(levels(bids.descendingMap()))
+                    .asks(levels(asks))
+                    .sequence(sequence)
+                    .timestamp(Instant.now())
+                    .build();
+        }
+        
+        private List<OrderBookSnapshotDto.Level> levels(NavigableMap<Long, Long> side) {
+            List<OrderBookSnapshotDto.Level> levels = new ArrayList<>(side.size());
+            side.forEach((priceCents, size) -> levels.add(
+                    new OrderBookSnapshotDto.Level(BigDecimal.valueOf(priceCents, 2), size)));
+            return levels;
+        }
+        
+        private void removeLevels(String symbol, OrderBookEventDto.Side side, NavigableMap<Long, Long> crossed,
+                                  List<OrderBookEventDto> events) {
+            Iterator<Long> it = crossed.keySet().iterator();
+            while (it.hasNext()) {
+                events.add(event(symbol, side, OrderBookEventDto.Action.DELETE, it.next(), 0L));
+                it.remove();
+            }
+        }
+        
+        private long randomLevel(NavigableMap<Long, Long> levels) {
+            int skip = random.nextInt(levels.size());
+            Iterator<Long> it = levels.keySet().iterator();
+            for (int i = 0; i < skip; i++) {
+                it.next();
+            }
+            return it.next();
+        }
+        
+        private OrderBookEventDto event(String symbol, OrderBookEventDto.Side side, OrderBookEventDto.Action action,
+                                        long priceCents, long size) {
+            return OrderBookEventDto.builder()
+                    .symbol(symbol)
+                    .side(side)
+                    .action(action)
+                    .price(BigDecimal.valueOf(priceCents, 2))
+                    .size(size)
+                    .sequence(++sequence)
+                    .timestamp(Instant.now())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Multi-node fan-out. Persistence and enrichment stay partitioned across the
+ * {@code stock-price-consumer-group}, while every node reads the full processed
+ * stream through its own consumer group and delivers it to its local sessions.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.websocket.fan-out", havingValue = "broadcast")
+public class StockPriceBroadcastListener {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketFanOutMetrics fanOutMetrics;
+    private final StockPriceStreamService stockPriceStreamService;
+    private final MarketRankingService marketRankingService;
+    private final MarketState marketState;
+    private final StockTopicDestinations topicDestinations;
+    private final TickReplayBuffer tickReplayBuffer;
+    private final SymbolRegistry symbolRegistry;
+
+    @KafkaListener(topics = "${app.kafka.topics.processed-stock-prices}",
+            groupId = "stock-price-broadcast-${app.node-id}")
+    public void broadcast(StockPriceDto stockPriceDto) {
+        try {
+            int symbolId = symbolRegistry.idOf(stockPriceDto);
+            marketState.update(stockPriceDto);
+            tickReplayBuffer.append(stockPriceDto);
+            messagingTemplate.convertAndSend(topicDestinations.forSymbol(symbolId), stockPriceDto);
+            fanOutMetrics.recordDelivery(stockPriceDto);
+            stockPriceStreamService.publish(stockPriceDto);
+            marketRankingService.update(stockPriceDto);
+        } catch (Exception e) {
+            log.error("Error broadcasting stock price: {}", e.getMessage(), e);
+        }
+    }
+}
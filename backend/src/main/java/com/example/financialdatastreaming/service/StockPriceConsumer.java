@@ -5,66 +5,204 @@ import com.example.financialdatastreaming.model.StockPrice;
 import com.example.financialdatastreaming.repository.StockPriceRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.Instant;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class StockPriceConsumer {
+public class StockPriceConsumer extends AbstractConsumerSeekAware {
 
     private final StockPriceRepository stockPriceRepository;
     private final KafkaTemplate<String, StockPriceDto> kafkaTemplate;
     private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketFanOutMetrics fanOutMetrics;
+    private final PriceHistoryCache priceHistoryCache;
+    private final StockPriceStreamService stockPriceStreamService;
+    private final MarketRankingService marketRankingService;
+    
+    private final MarketState marketState;
+    private final StockTopicDestinations topicDestinations;
+    private final TickReplayBuffer tickReplayBuffer;
+    private final SymbolRegistry symbolRegistry;
+    private final StockPriceService stockPriceService;
+    
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    
+    private final AtomicLong processedCount = new AtomicLong();
+    
+    // Committed position per partition when a restored snapshot lagged behind it; records
+    // below it were already persisted and forwarded, so they only rebuild in-memory state
+    private final Map<Integer, Long> replayBelow = new ConcurrentHashMap<>();
+    
+    @Value("${app.kafka.topics.stock-prices}")
+    private String stockPricesTopic;
     
     @Value("${app.kafka.topics.processed-stock-prices}")
     private String processedStockPricesTopic;
+    
+    @Value("#{'${app.websocket.fan-out:local}' != 'broadcast'}")
+    private boolean localFanOut;
+    
+    @Value("${app.history-cache.close-grace:5s}")
+    private Duration historyCloseGrace;
+    
+    // A snapshot further behind the commit than this is not replayed; live ticks catch the state up instead
+    @Value("${app.snapshot.max-replay-records:100000}")
+    private long maxReplayRecords;
+    
+    // Log one tick in every (mask + 1) at DEBUG; must be a power of two minus one
+    @Value("${app.consumer.log-sample-mask:1023}")
+    private long logSampleMask;
 
     @KafkaListener(topics = "${app.kafka.topics.stock-prices}", groupId = "stock-price-consumer-group")
-    public void consume(StockPriceDto stockPriceDto) {
+    public void consume(StockPriceDto stockPriceDto,
+                        @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+                        @Header(KafkaHeaders.OFFSET) long offset) {
         long startTime = System.currentTimeMillis();
-        log.debug("Received stock price: {}", stockPriceDto);
         
         try {
+            if (isReplay(partition, offset)) {
+                replayIntoState(stockPriceDto, partition, offset);
+                return;
+            }
+            
+            // Resolved once; downstream per-symbol state is indexed by this id
+            int symbolId = symbolRegistry.idOf(stockPriceDto);
+            
             // Enrich with previous price for change calculation
             enrichWithPriceChanges(stockPriceDto);
             
             // Save to database
-            StockPrice stockPrice = mapToEntity(stockPriceDto);
-            stockPriceRepository.save(stockPrice);
+            stockPriceRepository.insertTick(stockPriceDto);
+            
+            // A late tick (e.g. seeded history) lands in a segment that may already be cached as closed
+            long now = System.currentTimeMillis();
+            if (stockPriceDto.getTimestamp().toEpochMilli() < now - historyCloseGrace.toMillis()) {
+                priceHistoryCache.evictCovering(stockPriceDto.getSymbol(), stockPriceDto.getTimestamp().getEpochSecond());
+            }
             
             // Add processing metadata
-            stockPriceDto.setProcessedTimestamp(System.currentTimeMillis());
-            stockPriceDto.setProcessingLatency(System.currentTimeMillis() - startTime);
+            stockPriceDto.setProcessedTimestamp(now);
+            stockPriceDto.setProcessingLatency(now - startTime);
+            tickReplayBuffer.stamp(stockPriceDto);
+            marketState.update(stockPriceDto);
+            marketState.recordOffset(partition, offset);
+            stockPriceService.updateMetrics(symbolId, stockPriceDto.getProcessingLatency());
             
             // Forward to processed topic
             kafkaTemplate.send(processedStockPricesTopic, stockPriceDto.getSymbol(), stockPriceDto);
             
-            // Send directly to WebSocket subscribers
-            messagingTemplate.convertAndSend("/topic/stock/" + stockPriceDto.getSymbol(), stockPriceDto);
+            // Send directly to WebSocket subscribers, unless every node fans out from the processed topic
+            if (localFanOut) {
+                messagingTemplate.convertAndSend(topicDestinations.forSymbol(symbolId), stockPriceDto);
+                fanOutMetrics.recordDelivery(stockPriceDto);
+                stockPriceStreamService.publish(stockPriceDto);
+                marketRankingService.update(stockPriceDto);
+            }
             
-            log.info("Processed stock price for {} in {}ms", 
-                    stockPriceDto.getSymbol(), 
-                    stockPriceDto.getProcessingLatency());
+            if ((processedCount.incrementAndGet() & logSampleMask) == 0 && log.isDebugEnabled()) {
+                log.debug("Processed stock price for {} in {}ms ({} ticks total)",
+                        stockPriceDto.getSymbol(), stockPriceDto.getProcessingLatency(), processedCount.get());
+            }
         } catch (Exception e) {
             log.error("Error processing stock price: {}", e.getMessage(), e);
         }
     }
     
+    /*
+     * Line the restored snapshot up with the committed offset, once per partition after a
+     * restore. Offsets are committed per record while snapshots are periodic, so either may
+     * be ahead: a snapshot ahead of the commit skips records it already applied; a snapshot
+     * behind it (e.g. after a crash) rewinds to replay the missing range into memory without
+     * writing it again, unless the range is too long to hold live ticks back for.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        assignments.forEach((topicPartition, position) -> {
+            if (!topicPartition.topic().equals(stockPricesTopic)) {
+                return;
+            }
+            int partition = topicPartition.partition();
+            long restored = marketState.takeRestoredOffset(partition);
+            replayBelow.remove(partition);
+            if (restored < 0 || position == null || restored + 1 == position) {
+                return;
+            }
+            if (restored + 1 > position) {
+                log.info("Seeking {} from {} to {} after snapshot restore", topicPartition, position, restored + 1);
+            } else if (position - (restored + 1) > maxReplayRecords) {
+                log.warn("Snapshot is {} records behind {}; continuing from the committed position without replay",
+                        position - (restored + 1), topicPartition);
+                return;
+            } else {
+                log.info("Replaying {} offsets {}..{} into memory after snapshot restore",
+                        topicPartition, restored + 1, position - 1);
+                replayBelow.put(partition, position);
+            }
+            callback.seek(topicPartition.topic(), partition, restored + 1);
+        });
+    }
+    
+    // A partition that comes back later, here or after a restart, resumes from its committed position
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        super.onPartitionsRevoked(partitions);
+        for (TopicPartition topicPartition : partitions) {
+            if (topicPartition.topic().equals(stockPricesTopic)) {
+                replayBelow.remove(topicPartition.partition());
+                marketState.forgetPartition(topicPartition.partition());
+            }
+        }
+    }
+    
+    private boolean isReplay(int partition, long offset) {
+        Long committed = replayBelow.get(partition);
+        if (committed == null) {
+            return false;
+        }
+        if (offset < committed) {
+            return true;
+        }
+        replayBelow.remove(partition, committed);
+        return false;
+    }
+    
+    // Rebuild what the snapshot missed; the database row, processed-topic record and fan-out already happened
+    private void replayIntoState(StockPriceDto stockPriceDto, int partition, long offset) {
+        marketState.recordOffset(partition, offset);
+        // A tick no newer than the state it replays into has no previous price to change from here
+        StockPriceDto latest = marketState.getLatest(symbolRegistry.idOf(stockPriceDto));
+        if (latest != null && !stockPriceDto.getTimestamp().isAfter(latest.getTimestamp())) {
+            return;
+        }
+        enrichWithPriceChanges(stockPriceDto);
+        marketState.update(stockPriceDto);
+        if (localFanOut) {
+            marketRankingService.update(stockPriceDto);
+        }
+    }
+    
     private void enrichWithPriceChanges(StockPriceDto stockPriceDto) {
-        Optional<StockPrice> previousPrice = stockPriceRepository
-                .findTopBySymbolOrderByTimestampDesc(stockPriceDto.getSymbol());
+        BigDecimal prevPrice = previousPrice(stockPriceDto);
         
-        if (previousPrice.isPresent()) {
-            BigDecimal prevPrice = previousPrice.get().getPrice();
+        if (prevPrice != null) {
             BigDecimal currentPrice = stockPriceDto.getPrice();
             
             // Calculate change amount
@@ -72,10 +210,10 @@ public class StockPriceConsumer {
             stockPriceDto.setChangeAmount(changeAmount);
             
             // Calculate change percent
-            if (prevPrice.compareTo(BigDecimal.ZERO) > 0) {
+            if (prevPrice.signum() > 0) {
                 BigDecimal changePercent = changeAmount
                         .divide(prevPrice, 4, RoundingMode.HALF_UP)
-                        .multiply(new BigDecimal("100"));
+                        .multiply(HUNDRED);
                 stockPriceDto.setChangePercent(changePercent);
             }
         } else {
@@ -85,18 +223,14 @@ public class StockPriceConsumer {
         }
     }
     
-    private StockPrice mapToEntity(StockPriceDto dto) {
-        return StockPrice.builder()
-                .symbol(dto.getSymbol())
-                .price(dto.getPrice())
-                .open(dto.getOpen())
-                .high(dto.getHigh())
-                .low(dto.getLow())
-                .close(dto.getClose())
-                .volume(dto.getVolume())
-                .timestamp(dto.getTimestamp())
-                .changeAmount(dto.getChangeAmount())
-                .changePercent(dto.getChangePercent())
-                .build();
+    // In-memory latest tick; the database is only consulted the first time a symbol is seen
+    private BigDecimal previousPrice(StockPriceDto stockPriceDto) {
+        StockPriceDto latest = marketState.getLatest(symbolRegistry.idOf(stockPriceDto));
+        if (latest != null) {
+            return latest.getPrice();
+        }
+        return stockPriceRepository.findTopBySymbolOrderByTimestampDesc(stockPriceDto.getSymbol())
+                .map(StockPrice::getPrice)
+                .orElse(null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,485 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Server-Sent Events fan-out for non-browser consumers. Connections are parked on
+ * servlet async requests, so an idle connection costs no thread, and written with
+ * non-blocking servlet I/O: a writer only hands bytes to the container while the
+ * stream reports ready, so a slow client can never stall the shared writer pool.
+ * Each tick is encoded into an SSE frame once, and only when the symbol has a
+ * subscriber, then offered to a bounded per-connection buffer (oldest dropped on
+ * overflow); a connection that stays unwritable for longer than the write timeout is
+ * closed. The replay ring keeps the tick itself in preallocated slots, so a tick
+ * nobody is streaming costs an id and a slot write, not a serialization.
+ *
+ * Event ids are seeded from the wall clock in microseconds, so ids keep increasing
+ * across restarts. A Last-Event-ID the replay ring cannot serve in full gets a
+ * {@code reset} event followed by the latest price of each subscribed symbol.
+ */
+@Slf4j
+@Service
+public class StockPriceStreamService {
+
+    private static final byte[] HEARTBEAT_FRAME = ": hb\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Indexed by SymbolRegistry id; slots are created and cleared under subscriptionLock
+    private final AtomicReferenceArray<Set<SseConnection>> connectionsBySymbol;
+    private final Object subscriptionLock = new Object();
+    private final Set<SseConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong eventIds = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ObjectMapper objectMapper;
+    private final ExecutorService writers;
+    private final WebSocketFanOutMetrics fanOutMetrics;
+    private final SymbolRegistry symbolRegistry;
+    private final MarketState marketState;
+    private final Counter slowDisconnects;
+    private final Counter resets;
+
+    // Recent ticks kept for Last-Event-ID resume, indexed by id modulo capacity; slots are reused
+    private final ReplaySlot[] replayRing;
+
+    @Value("${app.sse.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${app.sse.heartbeat-interval-ms:15000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${app.sse.write-timeout-ms:10000}")
+    private long writeTimeoutMs;
+
+    public StockPriceStreamService(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                   WebSocketFanOutMetrics fanOutMetrics, SymbolRegistry symbolRegistry,
+                                   MarketState marketState,
+                                   @Value("${app.sse.writer-threads:4}") int writerThreads,
+                                   @Value("${app.sse.replay-size:4096}") int replaySize) {
+        this.objectMapper = objectMapper;
+        this.writers = Executors.newFixedThreadPool(writerThreads);
+        this.replayRing = new ReplaySlot[replaySize];
+        Arrays.setAll(replayRing, i -> new ReplaySlot());
+        this.fanOutMetrics = fanOutMetrics;
+        this.symbolRegistry = symbolRegistry;
+        this.marketState = marketState;
+        this.connectionsBySymbol = new AtomicReferenceArray<>(symbolRegistry.capacity());
+        this.slowDisconnects = Counter.builder("stock.sse.disconnects").tag("reason", "slow")
+                .description("SSE connections closed because the client stopped reading")
+                .register(meterRegistry);
+        this.resets = Counter.builder("stock.sse.resets")
+                .description("Last-Event-ID resumes answered with a reset and snapshot")
+                .register(meterRegistry);
+        Gauge.builder("stock.sse.connections", connections, Set::size).register(meterRegistry);
+    }
+
+    public void subscribe(HttpServletRequest request, HttpServletResponse response,
+                          Collection<String> symbols, Long lastEventId) throws IOException {
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no"); // Keep reverse proxies from holding events back
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0); // Never time out; heartbeats and the write timeout detect dead peers
+        // Only symbols this node has seen can be streamed; client input never registers new ones
+        int[] symbolIds = symbols.stream().mapToInt(symbolRegistry::find).filter(id -> id >= 0)
+                .distinct().sorted().toArray();
+        SseConnection connection = new SseConnection(asyncContext, response.getOutputStream(), symbolIds,
+                bufferSize);
+        asyncContext.addListener(connection);
+
+        connections.add(connection);
+        if (lastEventId != null) {
+            resume(connection, lastEventId);
+        } else {
+            register(connection);
+        }
+        connection.start();
+    }
+
+    public void publish(StockPriceDto stockPriceDto) {
+        int symbolId = symbolRegistry.idOf(stockPriceDto);
+        long id = eventIds.incrementAndGet();
+        replayRing[slot(id)].set(id, symbolId, stockPriceDto);
+        // Looked up after the ring write, so a resume that registers too late for this tick finds it there
+        Set<SseConnection> subscribers = connectionsBySymbol.get(symbolId);
+
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        byte[] frame;
+        try {
+            frame = priceFrame(id, stockPriceDto);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize stock price for SSE: {}", e.getMessage());
+            return;
+        }
+        long generatedTimestamp = stockPriceDto.isHistorical() ? 0L : stockPriceDto.getTimestamp().toEpochMilli();
+        StreamEvent event = new StreamEvent(id, symbolId, frame, generatedTimestamp, false);
+        for (SseConnection connection : subscribers) {
+            if (connection.offer(event)) {
+                writers.execute(connection::write);
+            }
+        }
+    }
+
+    // Cheap keep-alive: a comment line, only for connections that were quiet for a full interval
+    @Scheduled(fixedRateString = "${app.sse.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        long idleSince = System.currentTimeMillis() - heartbeatIntervalMs;
+        for (SseConnection connection : connections) {
+            if (connection.lastWriteMillis < idleSince && connection.offer(StreamEvent.HEARTBEAT)) {
+                writers.execute(connection::write);
+            }
+        }
+    }
+
+    // A client that stopped reading leaves its stream unwritable; drop it rather than buffer for it forever
+    @Scheduled(fixedRate = 1000)
+    public void closeStalledConnections() {
+        long stalledSince = System.currentTimeMillis() - writeTimeoutMs;
+        for (SseConnection connection : connections) {
+            long blockedSince = connection.blockedSinceMillis;
+            if (blockedSince != 0 && blockedSince < stalledSince) {
+                log.debug("Closing SSE connection unwritable for {}ms", System.currentTimeMillis() - blockedSince);
+                slowDisconnects.increment();
+                close(connection);
+            }
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+        try {
+            writers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connections.forEach(this::close);
+    }
+
+    /*
+     * Queue what a resuming client missed, then hand it over to live delivery. The bulk of
+     * the replay is encoded before the connection is registered. Registering and queueing
+     * the few ticks published meanwhile happen under the buffer lock, which live offers
+     * wait on, so no live event lands ahead of a replayed one; live copies of replayed ids
+     * are dropped when offered.
+     */
+    private void resume(SseConnection connection, long lastEventId) {
+        long newest = eventIds.get();
+        List<StreamEvent> missed = new ArrayList<>();
+        // Ids from another process, or older than the ring, cannot be replayed without holes
+        long replayedThrough = lastEventId <= newest && lastEventId >= newest - replayRing.length
+                ? collect(connection, lastEventId, newest, false, missed) : -1;
+
+        boolean scheduled = false;
+        synchronized (connection.buffer) {
+            register(connection);
+            long tail = eventIds.get();
+            if (replayedThrough >= 0) {
+                replayedThrough = collect(connection, replayedThrough, tail, true, missed);
+            }
+            if (replayedThrough >= 0) {
+                connection.replayedIds = missed.stream().mapToLong(StreamEvent::id).toArray();
+                for (StreamEvent event : missed) {
+                    scheduled |= connection.offer(event);
+                }
+            } else {
+                resets.increment();
+                scheduled = offerReset(connection, tail);
+            }
+        }
+        if (scheduled) {
+            writers.execute(connection::write);
+        }
+    }
+
+    /*
+     * Encode the ring's ticks for the connection's symbols with ids in (after, upTo] onto
+     * missed. Returns the last id covered, or -1 once a tick has been overwritten. A tick
+     * whose publish has taken its id but not yet written the ring is skipped only once the
+     * connection is registered, since that publish will then offer it live; before that the
+     * scan stops short of it and the registered pass picks it up.
+     */
+    private long collect(SseConnection connection, long after, long upTo, boolean registered,
+                         List<StreamEvent> missed) {
+        for (long id = after + 1; id <= upTo; id++) {
+            StockPriceDto tick = replayRing[slot(id)].tickIfSubscribed(id, connection.symbolIds);
+            if (tick == ReplaySlot.OVERWRITTEN) {
+                return -1;
+            } else if (tick == ReplaySlot.IN_FLIGHT) {
+                if (!registered) {
+                    return id - 1;
+                }
+            } else if (tick != null) {
+                try {
+                    missed.add(new StreamEvent(id, symbolRegistry.idOf(tick), priceFrame(id, tick),
+                            tick.getTimestamp().toEpochMilli(), true));
+                } catch (JsonProcessingException e) {
+                    log.error("Failed to serialize stock price for SSE: {}", e.getMessage());
+                }
+            }
+        }
+        return upTo;
+    }
+
+    // Tells the client its history is broken, moves its Last-Event-ID to now and sends the current prices
+    private boolean offerReset(SseConnection connection, long newest) {
+        byte[] reset = ("id: " + newest + "\nevent: reset\ndata: {}\n\n").getBytes(StandardCharsets.UTF_8);
+        boolean scheduled = connection.offer(new StreamEvent(newest, -1, reset, 0L, true));
+        for (int symbolId : connection.symbolIds) {
+            StockPriceDto latest = marketState.getLatest(symbolId);
+            if (latest == null) {
+                continue;
+            }
+            try {
+                byte[] frame = ("event: price\ndata: " + objectMapper.writeValueAsString(latest) + "\n\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                scheduled |= connection.offer(new StreamEvent(newest, symbolId, frame, 0L, true));
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialize stock price for SSE: {}", e.getMessage());
+            }
+        }
+        return scheduled;
+    }
+
+    private byte[] priceFrame(long id, StockPriceDto stockPriceDto) throws JsonProcessingException {
+        return ("id: " + id + "\nevent: price\ndata: " + objectMapper.writeValueAsString(stockPriceDto) + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int slot(long id) {
+        return (int) Math.floorMod(id, (long) replayRing.length);
+    }
+
+    private void close(SseConnection connection) {
+        unregister(connection);
+        connection.complete();
+    }
+
+    private void register(SseConnection connection) {
+        synchronized (subscriptionLock) {
+            for (int symbolId : connection.symbolIds) {
+                Set<SseConnection> subscribers = connectionsBySymbol.get(symbolId);
+                if (subscribers == null) {
+                    subscribers = ConcurrentHashMap.newKeySet();
+                    connectionsBySymbol.set(symbolId, subscribers);
+                }
+                subscribers.add(connection);
+            }
+        }
+    }
+
+    private void unregister(SseConnection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        synchronized (subscriptionLock) {
+            for (int symbolId : connection.symbolIds) {
+                Set<SseConnection> subscribers = connectionsBySymbol.get(symbolId);
+                if (subscribers != null && subscribers.remove(connection) && subscribers.isEmpty()) {
+                    connectionsBySymbol.set(symbolId, null);
+                }
+            }
+        }
+    }
+
+    // Mutable so publishing reuses the slot instead of allocating; a racing overwrite shows up as an id mismatch
+    private static final class ReplaySlot {
+        static final StockPriceDto OVERWRITTEN = new StockPriceDto();
+        static final StockPriceDto IN_FLIGHT = new StockPriceDto();
+
+        private long id;
+        private int symbolId = -1;
+        private StockPriceDto tick;
+
+        synchronized void set(long id, int symbolId, StockPriceDto tick) {
+            this.id = id;
+            this.symbolId = symbolId;
+            this.tick = tick;
+        }
+
+        // The tick if this slot holds id and one of the sorted symbolIds, null if another symbol's
+        synchronized StockPriceDto tickIfSubscribed(long id, int[] symbolIds) {
+            if (this.id < id) {
+                return IN_FLIGHT; // Still an older id: the publish that took this one has not written it yet
+            }
+            if (this.id > id) {
+                return OVERWRITTEN;
+            }
+            return Arrays.binarySearch(symbolIds, symbolId) >= 0 ? tick : null;
+        }
+    }
+
+    // generatedTimestamp is 0 for anything that is not live pipeline traffic (heartbeats, resets, seeded history)
+    private record StreamEvent(long id, int symbolId, byte[] frame, long generatedTimestamp, boolean replayed) {
+        static final StreamEvent HEARTBEAT = new StreamEvent(-1, -1, HEARTBEAT_FRAME, 0L, false);
+    }
+
+    private final class SseConnection implements WriteListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final int[] symbolIds;
+        private final int capacity;
+        private final ArrayDeque<StreamEvent> buffer;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        // Sorted ids queued by the Last-Event-ID replay, so their live copies are not queued twice
+        private long[] replayedIds;
+        private volatile long lastWriteMillis = System.currentTimeMillis();
+        // When the stream last reported not ready with events still to send, or 0 while it keeps up
+        private volatile long blockedSinceMillis;
+        private boolean started;
+        private boolean unflushed;
+        private boolean closed;
+
+        SseConnection(AsyncContext asyncContext, ServletOutputStream out, int[] symbolIds, int capacity) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.symbolIds = symbolIds;
+            this.capacity = capacity;
+            this.buffer = new ArrayDeque<>(capacity);
+        }
+
+        // Buffer an event, dropping the oldest on overflow; true if the caller should schedule a write
+        boolean offer(StreamEvent event) {
+            synchronized (buffer) {
+                if (!event.replayed && replayedIds != null && Arrays.binarySearch(replayedIds, event.id) >= 0) {
+                    return false; // Already queued by the resume replay
+                }
+                if (buffer.size() >= capacity) {
+                    buffer.pollFirst();
+                }
+                buffer.addLast(event);
+            }
+            return flushScheduled.compareAndSet(false, true);
+        }
+
+        // The container then calls onWritePossible once the stream is ready, which writes anything queued so far
+        synchronized void start() {
+            started = true; // Before the listener is set, in case the container calls back on this thread
+            unflushed = true; // Commit the response headers on the first write even if no event is queued
+            out.setWriteListener(this);
+        }
+
+        /*
+         * Hand queued frames to the container while the stream is ready. Runs on a writer
+         * thread or on the container thread via onWritePossible, never both at once. When
+         * the stream stops being ready the container calls onWritePossible later, so
+         * nothing here waits on the client.
+         */
+        synchronized void write() {
+            flushScheduled.set(false);
+            if (!started || closed) {
+                return;
+            }
+            try {
+                while (out.isReady()) {
+                    StreamEvent event;
+                    synchronized (buffer) {
+                        event = buffer.pollFirst();
+                    }
+                    if (event == null) {
+                        if (!unflushed) {
+                            blockedSinceMillis = 0;
+                            return;
+                        }
+                        unflushed = false;
+                        out.flush();
+                        continue;
+                    }
+                    out.write(event.frame);
+                    unflushed = true;
+                    lastWriteMillis = System.currentTimeMillis();
+                    if (!event.replayed && event.generatedTimestamp != 0) {
+                        fanOutMetrics.recordSseDelivery(event.generatedTimestamp);
+                    }
+                }
+                if (blockedSinceMillis == 0) {
+                    blockedSinceMillis = System.currentTimeMillis();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Closing SSE connection: {}", e.getMessage());
+                close(this);
+            }
+        }
+
+        synchronized void complete() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container after a client disconnect
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            write();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.debug("SSE write failed: {}", t.getMessage());
+            close(this);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            unregister(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close(this);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close(this);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
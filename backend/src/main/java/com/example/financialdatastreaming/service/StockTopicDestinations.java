@@ -0,0 +1,44 @@
+package com.example.financialdatastreaming.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-symbol STOMP destinations, indexed by {@link SymbolRegistry} id and built once per
+ * symbol instead of concatenated on every message.
+ */
+@Component
+public class StockTopicDestinations {
+
+    private static final String STOCK_TOPIC_PREFIX = "/topic/stock/";
+    private static final String BOOK_TOPIC_PREFIX = "/topic/book/";
+
+    private final SymbolRegistry symbolRegistry;
+    private final AtomicReferenceArray<String> destinations;
+    private final AtomicReferenceArray<String> bookDestinations;
+
+    public StockTopicDestinations(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+        this.destinations = new AtomicReferenceArray<>(symbolRegistry.capacity());
+        this.bookDestinations = new AtomicReferenceArray<>(symbolRegistry.capacity());
+    }
+
+    public String forSymbol(int symbolId) {
+        return destination(destinations, STOCK_TOPIC_PREFIX, symbolId);
+    }
+
+    public String forBook(int symbolId) {
+        return destination(bookDestinations, BOOK_TOPIC_PREFIX, symbolId);
+    }
+
+    // Racing builders produce equal strings, so a plain set is enough
+    private String destination(AtomicReferenceArray<String> cache, String prefix, int symbolId) {
+        String destination = cache.get(symbolId);
+        if (destination == null) {
+            destination = prefix + symbolRegistry.symbolOf(symbolId);
+            cache.set(symbolId, destination);
+        }
+        return destination;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Dense int ids for symbols, assigned at first sight and stable for the life of the
+ * process. The tick path resolves a symbol here once, caches the id on the tick, and
+ * then reaches per-symbol state (market state, rankings, order books, replay rings,
+ * SSE subscribers, topic names, counters) by array index. Client input only looks ids
+ * up with {@link #find}, so it can never fill the registry. Ids are local to this JVM
+ * and never leave it.
+ */
+@Component
+public class SymbolRegistry {
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> symbols;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public SymbolRegistry(MeterRegistry meterRegistry, @Value("${app.symbols.capacity:100000}") int capacity) {
+        this.symbols = new AtomicReferenceArray<>(capacity);
+        Gauge.builder("stock.symbols.registered", nextId, id -> Math.min(id.get(), capacity))
+                .register(meterRegistry);
+    }
+
+    // Id of the symbol, registering it if new
+    public int idOf(String symbol) {
+        return resolve(symbol);
+    }
+
+    // Id carried on the tick, resolved and attached on first use
+    public int idOf(StockPriceDto tick) {
+        Integer id = tick.getSymbolId();
+        if (id == null) {
+            id = resolve(tick.getSymbol());
+            tick.setSymbolId(id);
+        }
+        return id;
+    }
+
+    // Id of an already registered symbol, or -1; for lookups driven by client input
+    public int find(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : -1;
+    }
+
+    public String symbolOf(int id) {
+        return symbols.get(id);
+    }
+
+    // Upper bound (exclusive) of assigned ids
+    public int size() {
+        return Math.min(nextId.get(), symbols.length());
+    }
+
+    public int capacity() {
+        return symbols.length();
+    }
+
+    // Returns the map's own boxed value so callers storing it do not allocate
+    private Integer resolve(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id == null) {
+            id = ids.computeIfAbsent(symbol, this::assign);
+        }
+        return id;
+    }
+
+    private Integer assign(String symbol) {
+        int id = nextId.getAndIncrement();
+        if (id >= symbols.length()) {
+            throw new IllegalStateException("Symbol registry is full (" + symbols.length() + " symbols)");
+        }
+        symbols.set(id, symbol);
+        return id;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.ResumeResponseDto;
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-symbol sequence numbers plus a bounded ring of recent ticks, so a reconnecting
+ * client is caught up from memory instead of re-fetching history. When this node takes
+ * over stamping a symbol (first tick after a start, or after another node's ticks were
+ * appended), it seeds the sequence at the greater of the wall clock in microseconds and
+ * the newest sequence it has seen plus one, so a restarted or rebalanced sequencer never
+ * reuses a number a client has seen; the jump then reads as a gap too large to replay
+ * and the client gets a snapshot.
+ */
+@Component
+public class TickReplayBuffer {
+
+    private final AtomicReferenceArray<SymbolRing> rings;
+    private final SymbolRegistry symbolRegistry;
+    private final MarketState marketState;
+    private final int capacity;
+
+    private final Counter replays;
+    private final Counter snapshots;
+    private final DistributionSummary replayedTicks;
+
+    public TickReplayBuffer(SymbolRegistry symbolRegistry, MarketState marketState, MeterRegistry meterRegistry,
+                            @Value("${app.replay.buffer-size:256}") int capacity) {
+        this.rings = new AtomicReferenceArray<>(symbolRegistry.capacity());
+        this.symbolRegistry = symbolRegistry;
+        this.marketState = marketState;
+        this.capacity = capacity;
+        this.replays = Counter.builder("stock.resume.requests").tag("outcome", "replay").register(meterRegistry);
+        this.snapshots = Counter.builder("stock.resume.requests").tag("outcome", "snapshot").register(meterRegistry);
+        this.replayedTicks = DistributionSummary.builder("stock.resume.replayed.ticks")
+                .description("Ticks sent from memory per resume request")
+                .register(meterRegistry);
+    }
+
+    // Assign the symbol's next sequence and keep the tick for replay; called by the sequencing consumer
+    public void stamp(StockPriceDto tick) {
+        ring(symbolRegistry.idOf(tick)).stamp(tick);
+    }
+
+    // Keep a tick that was already stamped upstream, e.g. when fanning out from the processed topic
+    public void append(StockPriceDto tick) {
+        if (tick.getSequence() == null) {
+            return;
+        }
+        ring(symbolRegistry.idOf(tick)).append(tick);
+    }
+
+    public ResumeResponseDto resume(String symbol, Long lastSequence) {
+        // Unknown symbols from clients are not registered
+        int symbolId = symbolRegistry.find(symbol);
+        SymbolRing ring = symbolId >= 0 ? rings.get(symbolId) : null;
+        List<StockPriceDto> missed = ring != null && lastSequence != null ? ring.since(lastSequence) : null;
+        if (missed != null) {
+            replays.increment();
+            replayedTicks.record(missed.size());
+            return ResumeResponseDto.builder()
+                    .symbol(symbol)
+                    .ticks(missed)
+                    .latestSequence(missed.isEmpty() ? lastSequence : missed.get(missed.size() - 1).getSequence())
+                    .build();
+        }
+
+        // Fresh subscription or a gap the ring no longer covers: send the latest state only
+        snapshots.increment();
+        StockPriceDto latest = ring != null ? ring.newest() : null;
+        if (latest == null) {
+            latest = marketState.getLatest(symbol);
+        }
+        return ResumeResponseDto.builder()
+                .symbol(symbol)
+                .snapshot(true)
+                .ticks(latest != null ? List.of(latest) : List.of())
+                .latestSequence(latest != null ? latest.getSequence() : null)
+                .build();
+    }
+
+    private SymbolRing ring(int symbolId) {
+        SymbolRing ring = rings.get(symbolId);
+        if (ring == null) {
+            SymbolRing created = new SymbolRing(capacity);
+            ring = rings.compareAndSet(symbolId, null, created) ? created : rings.get(symbolId);
+        }
+        return ring;
+    }
+
+    private static final class SymbolRing {
+        private final StockPriceDto[] ticks;
+        private long newestSequence = -1;
+        private int size;
+        // Whether the newest sequence was assigned here; false until the first stamp and after foreign appends
+        private boolean stamping;
+
+        SymbolRing(int capacity) {
+            this.ticks = new StockPriceDto[capacity];
+        }
+
+        synchronized void stamp(StockPriceDto tick) {
+            long sequence = stamping
+                    ? newestSequence + 1
+                    : Math.max(newestSequence + 1, System.currentTimeMillis() * 1000);
+            stamping = true;
+            tick.setSequence(sequence);
+            store(tick, sequence);
+        }
+
+        synchronized void append(StockPriceDto tick) {
+            long sequence = tick.getSequence();
+            if (sequence <= newestSequence) {
+                return; // Redelivered, or one of this node's own stamps coming back
+            }
+            stamping = false; // Another node is sequencing this symbol; reseed if it comes back here
+            store(tick, sequence);
+        }
+
+        // Ticks after lastSequence, oldest first, or null if the ring cannot fill the gap
+        synchronized List<StockPriceDto> since(long lastSequence) {
+            long oldestSequence = newestSequence - size + 1;
+            if (size == 0 || lastSequence > newestSequence || lastSequence < oldestSequence - 1) {
+                return null;
+            }
+            List<StockPriceDto> missed = new ArrayList<>((int) (newestSequence - lastSequence));
+            for (long sequence = lastSequence + 1; sequence <= newestSequence; sequence++) {
+                missed.add(ticks[slot(sequence)]);
+            }
+            return missed;
+        }
+
+        synchronized StockPriceDto newest() {
+            return size > 0 ? ticks[slot(newestSequence)] : null;
+        }
+
+        private void store(StockPriceDto tick, long sequence) {
+            if (sequence != newestSequence + 1) {
+                size = 0; // The sequencer restarted or moved; older entries are not contiguous with this one
+            }
+            ticks[slot(sequence)] = tick;
+            newestSequence = sequence;
+            size = Math.min(size + 1, ticks.length);
+        }
+
+        private int slot(long sequence) {
+            return (int) Math.floorMod(sequence, (long) ticks.length);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-node fan-out metrics. Every meter carries the common {@code node} tag
+ * configured via {@code management.metrics.tags.node}, so replicas can be compared
+ * side by side in the actuator/prometheus output.
+ *
+ * Pipeline latency runs from the generator's tick timestamp to the hand-off to a
+ * transport, so unlike the browser's {@code Date.now() - processedTimestamp} it contains
+ * no client clock skew. It does contain skew between server nodes whenever the tick was
+ * generated on another node (always in broadcast fan-out, and in local fan-out with more
+ * than one replica), so compare nodes only with their clocks synchronized; readings that
+ * skew pushes below zero are dropped. Subscriber-side latency is measured by the load
+ * test suite. Seeded history and resume replays are not live traffic and are excluded
+ * by flag, not by age, so a real backlog still shows up.
+ */
+@Component
+public class WebSocketFanOutMetrics {
+
+    private final SubProtocolWebSocketHandler webSocketHandler;
+    private final Counter deliveredMessages;
+    private final Timer stompLatency;
+    private final Timer sseLatency;
+
+    // The broker config declares this bean as a plain WebSocketHandler, so it can only be matched by name
+    public WebSocketFanOutMetrics(MeterRegistry meterRegistry,
+                                  @Qualifier("subProtocolWebSocketHandler") WebSocketHandler webSocketHandler) {
+        this.webSocketHandler = (SubProtocolWebSocketHandler) webSocketHandler;
+        this.deliveredMessages = Counter.builder("stock.websocket.delivered")
+                .description("Ticks handed to local STOMP subscribers on this node")
+                .register(meterRegistry);
+        this.stompLatency = pipelineTimer(meterRegistry, "stomp");
+        this.sseLatency = pipelineTimer(meterRegistry, "sse");
+        Gauge.builder("stock.websocket.sessions", this, WebSocketFanOutMetrics::getOpenSessionCount)
+                .description("Open WebSocket/SockJS sessions on this node")
+                .register(meterRegistry);
+    }
+
+    // getTotalSessions() is cumulative (never decremented); these three are the sessions open right now
+    public long getOpenSessionCount() {
+        SubProtocolWebSocketHandler.Stats stats = webSocketHandler.getStats();
+        return (long) stats.getWebSocketSessions() + stats.getHttpStreamingSessions() + stats.getHttpPollingSessions();
+    }
+
+    public void recordDelivery(StockPriceDto tick) {
+        deliveredMessages.increment();
+        if (!tick.isHistorical()) {
+            record(stompLatency, tick.getTimestamp().toEpochMilli());
+        }
+    }
+
+    public void recordSseDelivery(long generatedAtMillis) {
+        record(sseLatency, generatedAtMillis);
+    }
+
+    // Generator-to-transport latency percentiles for the STOMP path, or null before any delivery
+    public double[] getStompLatencyPercentilesMs() {
+        ValueAtPercentile[] percentiles = stompLatency.takeSnapshot().percentileValues();
+        if (stompLatency.count() == 0 || percentiles.length == 0) {
+            return null;
+        }
+        double[] values = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            values[i] = percentiles[i].value(TimeUnit.MILLISECONDS);
+        }
+        return values;
+    }
+
+    private void record(Timer timer, long generatedAtMillis) {
+        long latencyMs = System.currentTimeMillis() - generatedAtMillis;
+        if (latencyMs >= 0) {
+            timer.record(latencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Timer pipelineTimer(MeterRegistry meterRegistry, String transport) {
+        return Timer.builder("stock.pipeline.latency")
+                .description("Generator tick timestamp to hand-off to a client transport")
+                .tag("transport", transport)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,29 @@
+-- Base tick table, partitioned by time as a TimescaleDB hypertable.
+-- The primary key includes the partitioning column, as TimescaleDB requires.
+CREATE EXTENSION IF NOT EXISTS timescaledb;
+
+CREATE TABLE IF NOT EXISTS stock_prices (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    symbol         VARCHAR(10)              NOT NULL,
+    price          NUMERIC(10, 4)           NOT NULL,
+    open           NUMERIC(10, 4)           NOT NULL,
+    high           NUMERIC(10, 4)           NOT NULL,
+    low            NUMERIC(10, 4)           NOT NULL,
+    close          NUMERIC(10, 4)           NOT NULL,
+    volume         BIGINT                   NOT NULL,
+    timestamp      TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    change_percent NUMERIC(10, 4),
+    change_amount  NUMERIC(10, 4),
+    vwap           NUMERIC(10, 4),
+    version        BIGINT,
+    PRIMARY KEY (id, timestamp)
+);
+
+SELECT create_hypertable('stock_prices', 'timestamp',
+                         chunk_time_interval => INTERVAL '1 day',
+                         if_not_exists => TRUE,
+                         migrate_data => TRUE);
+
+CREATE INDEX IF NOT EXISTS idx_stock_prices_symbol ON stock_prices (symbol);
+CREATE INDEX IF NOT EXISTS idx_stock_prices_timestamp ON stock_prices (timestamp);
+CREATE INDEX IF NOT EXISTS idx_stock_prices_symbol_time ON stock_prices (symbol, timestamp DESC);
@@ -0,0 +1,9 @@
+-- Native columnar compression for closed chunks. Segmenting by symbol keeps
+-- per-symbol range scans cheap on compressed data.
+ALTER TABLE stock_prices SET (
+    timescaledb.compress,
+    timescaledb.compress_segmentby = 'symbol',
+    timescaledb.compress_orderby = 'timestamp DESC, id'
+);
+
+SELECT add_compression_policy('stock_prices', INTERVAL '2 days', if_not_exists => TRUE);
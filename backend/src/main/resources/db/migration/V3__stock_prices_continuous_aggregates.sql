@@ -0,0 +1,63 @@
+-- OHLCV bars at 1 minute, 1 hour and 1 day. The hourly and daily views are
+-- hierarchical (built on the finer view) so each refresh only re-reads bars.
+-- Real-time aggregation is enabled so the open trailing bucket is still visible.
+CREATE MATERIALIZED VIEW IF NOT EXISTS stock_prices_1m
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT symbol,
+       time_bucket(INTERVAL '1 minute', timestamp) AS bucket,
+       first(price, timestamp) AS open,
+       max(price)              AS high,
+       min(price)              AS low,
+       last(price, timestamp)  AS close,
+       sum(volume)             AS volume
+FROM stock_prices
+GROUP BY symbol, bucket
+WITH NO DATA;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS stock_prices_1h
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT symbol,
+       time_bucket(INTERVAL '1 hour', bucket) AS bucket,
+       first(open, bucket) AS open,
+       max(high)           AS high,
+       min(low)            AS low,
+       last(close, bucket) AS close,
+       sum(volume)         AS volume
+FROM stock_prices_1m
+GROUP BY symbol, time_bucket(INTERVAL '1 hour', bucket)
+WITH NO DATA;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS stock_prices_1d
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT symbol,
+       time_bucket(INTERVAL '1 day', bucket) AS bucket,
+       first(open, bucket) AS open,
+       max(high)           AS high,
+       min(low)            AS low,
+       last(close, bucket) AS close,
+       sum(volume)         AS volume
+FROM stock_prices_1h
+GROUP BY symbol, time_bucket(INTERVAL '1 day', bucket)
+WITH NO DATA;
+
+SELECT add_continuous_aggregate_policy('stock_prices_1m',
+        start_offset => INTERVAL '2 hours',
+        end_offset => INTERVAL '1 minute',
+        schedule_interval => INTERVAL '1 minute',
+        if_not_exists => TRUE);
+
+SELECT add_continuous_aggregate_policy('stock_prices_1h',
+        start_offset => INTERVAL '2 days',
+        end_offset => INTERVAL '1 hour',
+        schedule_interval => INTERVAL '30 minutes',
+        if_not_exists => TRUE);
+
+SELECT add_continuous_aggregate_policy('stock_prices_1d',
+        start_offset => INTERVAL '7 days',
+        end_offset => INTERVAL '1 day',
+        schedule_interval => INTERVAL '1 hour',
+        if_not_exists => TRUE);
+
+CREATE INDEX IF NOT EXISTS idx_stock_prices_1m_symbol_bucket ON stock_prices_1m (symbol, bucket DESC);
+CREATE INDEX IF NOT EXISTS idx_stock_prices_1h_symbol_bucket ON stock_prices_1h (symbol, bucket DESC);
+CREATE INDEX IF NOT EXISTS idx_stock_prices_1d_symbol_bucket ON stock_prices_1d (symbol, bucket DESC);
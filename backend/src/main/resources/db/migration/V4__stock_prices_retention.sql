@@ -0,0 +1,9 @@
+-- Tiered retention: raw ticks are short-lived, coarser bars are kept longer.
+-- Each tier outlives the refresh window of the aggregate built on top of it.
+SELECT add_retention_policy('stock_prices', INTERVAL '30 days', if_not_exists => TRUE);
+SELECT add_retention_policy('stock_prices_1m', INTERVAL '90 days', if_not_exists => TRUE);
+SELECT add_retention_policy('stock_prices_1h', INTERVAL '2 years', if_not_exists => TRUE);
+
+-- Compress materialised minute bars once they are outside the refresh window
+ALTER MATERIALIZED VIEW stock_prices_1m SET (timescaledb.compress = true);
+SELECT add_compression_policy('stock_prices_1m', compress_after => INTERVAL '7 days', if_not_exists => TRUE);
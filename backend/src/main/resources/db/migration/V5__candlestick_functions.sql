@@ -0,0 +1,67 @@
+-- Helper functions for ad-hoc analysis, previously created by init-timescaledb.sql
+CREATE OR REPLACE FUNCTION get_candlestick_data(
+    symbol_param TEXT,
+    start_time TIMESTAMPTZ,
+    end_time TIMESTAMPTZ,
+    bucket_interval TEXT
+) RETURNS TABLE (
+    bucket TIMESTAMPTZ,
+    open NUMERIC,
+    high NUMERIC,
+    low NUMERIC,
+    close NUMERIC,
+    volume BIGINT
+) LANGUAGE SQL AS $$
+    SELECT 
+        time_bucket(bucket_interval::INTERVAL, timestamp) AS bucket,
+        FIRST(price, timestamp) AS open,
+        MAX(price) AS high,
+        MIN(price) AS low,
+        LAST(price, timestamp) AS close,
+        SUM(volume)::BIGINT AS volume
+    FROM stock_prices
+    WHERE 
+        symbol = symbol_param AND
+        timestamp >= start_time AND
+        timestamp <= end_time
+    GROUP BY bucket
+    ORDER BY bucket ASC;
+$$;
+
+-- Create a function to calculate performance metrics
+CREATE OR REPLACE FUNCTION calculate_query_performance()
+RETURNS TABLE (
+    retrieval_time_ms DOUBLE PRECISION,
+    baseline_ms DOUBLE PRECISION,
+    improvement_percentage DOUBLE PRECISION
+) LANGUAGE SQL AS $$
+    WITH timescale_query AS (
+        SELECT 
+            extract(epoch from clock_timestamp() - statement_timestamp()) * 1000 AS query_time
+        FROM 
+            get_candlestick_data('AAPL', NOW() - INTERVAL '1 day', NOW(), '1 minute')
+    ),
+    regular_query AS (
+        -- Simulate a non-optimized query to compare against
+        SELECT 
+            extract(epoch from clock_timestamp() - statement_timestamp()) * 1000 AS query_time
+        FROM (
+            SELECT 
+                date_trunc('minute', timestamp) AS bucket,
+                AVG(price) as avg_price,
+                SUM(volume) as volume
+            FROM stock_prices
+            WHERE 
+                symbol = 'AAPL' AND
+                timestamp >= NOW() - INTERVAL '1 day' AND
+                timestamp <= NOW()
+            GROUP BY bucket
+            ORDER BY bucket
+        ) t
+    )
+    SELECT 
+        (SELECT query_time FROM timescale_query),
+        (SELECT query_time FROM regular_query),
+        ((SELECT query_time FROM regular_query) - (SELECT query_time FROM timescale_query)) / 
+        (SELECT query_time FROM regular_query) * 100
+$$;
@@ -0,0 +1,296 @@
+package com.example.financialdatastreaming;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import com.example.financialdatastreaming.service.SymbolRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Broadcast fan-out across two nodes: the test's own context and a second instance of the
+ * application started beside it, both with {@code app.websocket.fan-out=broadcast} and their
+ * own {@code app.node-id}, sharing one embedded Kafka broker. Persistence and sequencing stay
+ * split across the shared consumer group while each node reads the whole processed stream, so
+ * every STOMP and SSE subscriber on either node must get each tick of its symbol exactly once,
+ * with the same strictly increasing per-symbol sequence on both nodes. The context is closed
+ * afterwards rather than cached, as no other test shares its broadcast configuration.
+ */
+@DirtiesContext
+@TestPropertySource(properties = {
+        "app.websocket.fan-out=broadcast",
+        "app.node-id=node-a"
+})
+@Slf4j
+class BroadcastFanOutTest extends LoadTestSupport {
+
+    private static final String DATA = "data: ";
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @Test
+    void everyNodeDeliversEveryTickOnceToItsOwnSubscribers() throws Exception {
+        List<String> symbols = symbols("BCAST", intSetting("load-test.broadcast.symbols"));
+        int ticksPerSymbol = intSetting("load-test.broadcast.ticks-per-symbol");
+        List<Subscriber> subscribers = new ArrayList<>();
+        List<StompSession> sessions = new ArrayList<>();
+        List<Flow.Subscription> streams = new ArrayList<>();
+        WebSocketStompClient stompClient = stompClient();
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        try (ConfigurableApplicationContext nodeB = startNode("node-b")) {
+            KafkaListenerEndpointRegistry nodeBListeners = nodeB.getBean(KafkaListenerEndpointRegistry.class);
+            // Each node reads every processed partition through its own group; the two share the raw topic
+            awaitCondition(() -> groupsSettled(nodeBListeners), 60_000, "consumer groups rebalanced across both nodes");
+
+            Map<String, Integer> ports = new LinkedHashMap<>();
+            ports.put("node-a", port);
+            ports.put("node-b", ((ServletWebServerApplicationContext) nodeB).getWebServer().getPort());
+            SymbolRegistry nodeBSymbols = nodeB.getBean(SymbolRegistry.class);
+
+            // The stream only accepts symbols a node has already seen, so both see a tick of each first
+            long sent = 0;
+            long registeredBy = System.currentTimeMillis() + 30_000;
+            while (!symbols.stream().allMatch(symbol -> symbolRegistry.find(symbol) >= 0
+                    && nodeBSymbols.find(symbol) >= 0)) {
+                assertThat(System.currentTimeMillis()).as("symbols registered on both nodes").isLessThan(registeredBy);
+                for (String symbol : symbols) {
+                    kafkaTemplate.send(stockPricesTopic, symbol, tick(symbol, Instant.now(), ++sent));
+                }
+                Thread.sleep(200);
+            }
+
+            for (Map.Entry<String, Integer> node : ports.entrySet()) {
+                for (String symbol : symbols) {
+                    Subscriber stomp = new Subscriber(node.getKey(), "STOMP", symbol);
+                    subscribers.add(stomp);
+                    StompSession session = connectAsync(stompClient, node.getValue()).get(60, TimeUnit.SECONDS);
+                    sessions.add(session);
+                    subscribe(session, "/topic/stock/" + symbol, stomp::onTick);
+
+                    Subscriber sse = new Subscriber(node.getKey(), "SSE", symbol);
+                    subscribers.add(sse);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + node.getValue()
+                                    + "/api/stock-prices/stream?symbols=" + symbol))
+                            .header("Accept", "text/event-stream")
+                            .build();
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(
+                            new LineSubscriber(sse, streams)));
+                }
+            }
+
+            // Subscriptions take effect asynchronously; keep ticking until every subscriber has seen one
+            long receivingBy = System.currentTimeMillis() + 30_000;
+            while (!subscribers.stream().allMatch(Subscriber::receiving)) {
+                assertThat(System.currentTimeMillis()).as("every subscriber receiving").isLessThan(receivingBy);
+                for (String symbol : symbols) {
+                    kafkaTemplate.send(stockPricesTopic, symbol, tick(symbol, Instant.now(), ++sent));
+                }
+                Thread.sleep(200);
+            }
+
+            // Measured ticks carry a distinct millisecond each, after every warm-up tick
+            long measureFrom = System.currentTimeMillis() + 1_000;
+            Map<String, List<Long>> expected = new HashMap<>();
+            symbols.forEach(symbol -> expected.put(symbol, new ArrayList<>()));
+            long offset = 0;
+            for (int i = 0; i < ticksPerSymbol; i++) {
+                for (String symbol : symbols) {
+                    long timestamp = measureFrom + offset++;
+                    expected.get(symbol).add(timestamp);
+                    kafkaTemplate.send(stockPricesTopic, symbol, tick(symbol, Instant.ofEpochMilli(timestamp), ++sent));
+                }
+                Thread.sleep(5);
+            }
+            kafkaTemplate.flush();
+            awaitCondition(() -> subscribers.stream().allMatch(subscriber ->
+                            subscriber.measured(measureFrom).size() >= ticksPerSymbol),
+                    30_000, "measured ticks delivered to every subscriber");
+            // Anything delivered twice would arrive shortly after the first copy
+            Thread.sleep(1_000);
+
+            Map<String, Map<Long, Long>> sequenceByTimestamp = new HashMap<>();
+            for (Subscriber subscriber : subscribers) {
+                List<long[]> measured = subscriber.measured(measureFrom);
+                log.info("{} {} on {}: {} measured ticks of {}", subscriber.node, subscriber.transport,
+                        subscriber.symbol, measured.size(), ticksPerSymbol);
+
+                assertThat(measured.stream().map(tick -> tick[0]).toList())
+                        .as("%s %s ticks of %s, each once and in order", subscriber.node, subscriber.transport,
+                                subscriber.symbol)
+                        .containsExactlyElementsOf(expected.get(subscriber.symbol));
+                List<Long> sequences = subscriber.sequences();
+                for (int i = 1; i < sequences.size(); i++) {
+                    assertThat(sequences.get(i)).as("%s %s sequence of %s", subscriber.node, subscriber.transport,
+                            subscriber.symbol).isGreaterThan(sequences.get(i - 1));
+                }
+                // One stamp per tick, whichever node consumed it: the same tick has the same sequence everywhere
+                Map<Long, Long> stamped = sequenceByTimestamp.computeIfAbsent(subscriber.symbol, s -> new HashMap<>());
+                for (long[] tick : measured) {
+                    Long first = stamped.putIfAbsent(tick[0], tick[1]);
+                    if (first != null) {
+                        assertThat(tick[1]).as("sequence of the %s tick at %d on %s %s", subscriber.symbol,
+                                tick[0], subscriber.node, subscriber.transport).isEqualTo(first);
+                    }
+                }
+            }
+        } finally {
+            streams.forEach(Flow.Subscription::cancel);
+            sessions.stream().filter(StompSession::isConnected).forEach(StompSession::disconnect);
+            stompClient.stop();
+        }
+    }
+
+    // A second node: the same application and database stand-in, on its own port and node id
+    private ConfigurableApplicationContext startNode(String nodeId) {
+        // As arguments rather than default properties, so they win over application.properties
+        return new SpringApplicationBuilder(FinancialDataStreamingApplication.class, DatabaseStandIn.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--spring.autoconfigure.exclude=" + DATABASE_AUTOCONFIGURATION,
+                        "--app.data-generator.enabled=false",
+                        "--app.snapshot.enabled=false",
+                        "--app.default-symbols=AAPL",
+                        "--app.symbols.capacity=10000",
+                        "--app.websocket.fan-out=broadcast",
+                        "--app.node-id=" + nodeId,
+                        "--logging.level.org.apache.kafka=WARN",
+                        "--logging.level.kafka=WARN",
+                        "--logging.level.state.change.logger=WARN");
+    }
+
+    // Every per-node group owns all three partitions on both nodes; the shared group owns them once between the two
+    private boolean groupsSettled(KafkaListenerEndpointRegistry nodeBListeners) {
+        int sharedPartitions = 0;
+        for (KafkaListenerEndpointRegistry registry : List.of(listenerRegistry, nodeBListeners)) {
+            for (MessageListenerContainer container : registry.getListenerContainers()) {
+                int assigned = container.getAssignedPartitions() != null ? container.getAssignedPartitions().size() : 0;
+                if ("stock-price-consumer-group".equals(container.getGroupId())) {
+                    sharedPartitions += assigned;
+                } else if (assigned != 3) {
+                    return false;
+                }
+            }
+        }
+        return sharedPartitions == 3;
+    }
+
+    private static StockPriceDto tick(String symbol, Instant timestamp, long volume) {
+        BigDecimal price = BigDecimal.valueOf(10_000 + volume % 1_000, 2);
+        return StockPriceDto.builder()
+                .symbol(symbol)
+                .price(price)
+                .open(BigDecimal.valueOf(100))
+                .high(price)
+                .low(BigDecimal.valueOf(100))
+                .close(price)
+                .volume(volume)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static void awaitCondition(BooleanSupplier condition, long timeoutMillis,
+                                       String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as(description).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    // Every tick one subscriber received, as its timestamp and sequence, in arrival order
+    private static final class Subscriber {
+        private final String node;
+        private final String transport;
+        private final String symbol;
+        private final List<long[]> ticks = new ArrayList<>();
+
+        Subscriber(String node, String transport, String symbol) {
+            this.node = node;
+            this.transport = transport;
+            this.symbol = symbol;
+        }
+
+        synchronized void onTick(String json) {
+            ticks.add(new long[]{tickTimestampMillis(json), tickSequence(json)});
+        }
+
+        synchronized boolean receiving() {
+            return !ticks.isEmpty();
+        }
+
+        synchronized List<long[]> measured(long fromMillis) {
+            return ticks.stream().filter(tick -> tick[0] >= fromMillis).toList();
+        }
+
+        synchronized List<Long> sequences() {
+            return ticks.stream().map(tick -> tick[1]).toList();
+        }
+    }
+
+    // One SSE client: hands the data line of each price event to its subscriber
+    private static final class LineSubscriber implements Flow.Subscriber<String> {
+        private final Subscriber subscriber;
+        private final List<Flow.Subscription> streams;
+
+        LineSubscriber(Subscriber subscriber, List<Flow.Subscription> streams) {
+            this.subscriber = subscriber;
+            this.streams = streams;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (streams) {
+                streams.add(subscription);
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith(DATA)) {
+                subscriber.onTick(line.substring(DATA.length()));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.warn("SSE client for {} on {} failed: {}", subscriber.symbol, subscriber.node, throwable.toString());
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.financialdatastreaming;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Generator-to-subscriber latency and sustained throughput of the STOMP fan-out. Many
+ * STOMP sessions subscribe over real WebSockets, each to one symbol, while ticks are
+ * driven through Kafka at a fixed rate; latency is taken when a subscriber receives the
+ * frame, against the tick's own timestamp, so it covers Kafka, the consumer, the broker,
+ * the outbound channel and the socket.
+ */
+@Tag("load")
+@Slf4j
+class FanOutLoadTest extends LoadTestSupport {
+
+    @Test
+    void stompFanOutMeetsItsLatencyAndThroughputThresholds() throws Exception {
+        int subscribers = intSetting("load-test.stomp.subscribers");
+        int symbolCount = intSetting("load-test.stomp.symbols");
+        double ticksPerSecond = doubleSetting("load-test.stomp.ticks-per-second");
+        List<String> symbols = symbols("FAN", symbolCount);
+
+        Histogram latency = latencyHistogram();
+        AtomicLong received = new AtomicLong();
+        AtomicLong lastReceivedMillis = new AtomicLong();
+        AtomicLongArray receivedBySession = new AtomicLongArray(subscribers);
+        AtomicLongArray lastSequenceBySession = new AtomicLongArray(subscribers);
+        AtomicLong outOfOrder = new AtomicLong();
+        AtomicInteger warmedUp = new AtomicInteger();
+
+        WebSocketStompClient client = stompClient();
+        List<StompSession> sessions = new ArrayList<>(subscribers);
+        try (TickDriver driver = new TickDriver(symbols)) {
+            List<CompletableFuture<StompSession>> connecting = new ArrayList<>(subscribers);
+            for (int i = 0; i < subscribers; i++) {
+                connecting.add(connectAsync(client));
+            }
+            for (int i = 0; i < subscribers; i++) {
+                int session = i;
+                StompSession stompSession = connecting.get(i).get(60, TimeUnit.SECONDS);
+                sessions.add(stompSession);
+                subscribe(stompSession, "/topic/stock/" + symbols.get(i % symbolCount), json -> {
+                    long now = System.currentTimeMillis();
+                    long generated = tickTimestampMillis(json);
+                    if (receivedBySession.getAndIncrement(session) == 0) {
+                        warmedUp.incrementAndGet();
+                    }
+                    // Each session sees one symbol, so its sequence must only go up
+                    if (tickSequence(json) <= lastSequenceBySession.getAndSet(session, tickSequence(json))) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    if (driver.measured(generated)) {
+                        latency.recordValue(Math.max(0, now - generated));
+                        received.incrementAndGet();
+                        lastReceivedMillis.accumulateAndGet(now, Math::max);
+                    }
+                });
+            }
+
+            // Every subscription must be live before measuring, or its share would count as lost
+            driver.start(ticksPerSecond);
+            long warmupUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(
+                    intSetting("load-test.stomp.warmup-seconds"));
+            while (System.currentTimeMillis() < warmupUntil || warmedUp.get() < subscribers) {
+                assertThat(System.currentTimeMillis() - warmupUntil)
+                        .as("subscribers receiving during warm-up (%d of %d)", warmedUp.get(), subscribers)
+                        .isLessThan(30_000);
+                Thread.sleep(50);
+            }
+
+            driver.startMeasuring();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(intSetting("load-test.stomp.measure-seconds")));
+            driver.stop();
+
+            long expected = 0;
+            for (int i = 0; i < subscribers; i++) {
+                expected += driver.measuredTicks(symbols.get(i % symbolCount));
+            }
+            awaitQuiet(received, expected, 30_000);
+
+            double sustained = driver.measuredTicks() * 1000.0
+                    / Math.max(1, lastReceivedMillis.get() - driver.measureFromMillis());
+            double lossRatio = expected > 0 ? (double) (expected - received.get()) / expected : 0;
+            log.info("STOMP fan-out: {} subscribers on {} symbols, driven {} ticks/s; sustained {} ticks/s "
+                            + "({} deliveries/s); {}; lost {} of {} deliveries, {} out of order",
+                    subscribers, symbolCount, Math.round(ticksPerSecond), Math.round(sustained),
+                    Math.round(sustained * subscribers / symbolCount), percentiles(latency),
+                    expected - received.get(), expected, outOfOrder.get());
+
+            assertThat(outOfOrder.get()).as("deliveries overtaken by a later tick").isZero();
+            assertThat(lossRatio).as("lost delivery ratio").isLessThanOrEqualTo(
+                    doubleSetting("load-test.stomp.max-loss-ratio"));
+            assertThat(sustained).as("sustained ticks/s").isGreaterThanOrEqualTo(
+                    ticksPerSecond * doubleSetting("load-test.stomp.min-throughput-ratio"));
+            assertThat(latency.getValueAtPercentile(50)).as("p50 ms").isLessThanOrEqualTo(
+                    intSetting("load-test.stomp.max-p50-ms"));
+            assertThat(latency.getValueAtPercentile(99)).as("p99 ms").isLessThanOrEqualTo(
+                    intSetting("load-test.stomp.max-p99-ms"));
+            assertThat(latency.getValueAtPercentile(99.9)).as("p99.9 ms").isLessThanOrEqualTo(
+                    intSetting("load-test.stomp.max-p999-ms"));
+        } finally {
+            sessions.forEach(StompSession::disconnect);
+            client.stop();
+        }
+    }
+}
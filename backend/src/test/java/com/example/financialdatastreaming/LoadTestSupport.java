@@ -0,0 +1,419 @@
+package com.example.financialdatastreaming;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import com.example.financialdatastreaming.repository.StockPriceRepository;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Shared harness for the end-to-end load tests: the whole application on a random port,
+ * fed through an embedded Kafka broker, with the database replaced by a no-op repository
+ * that counts the queries it is asked to run. Ticks are driven at a fixed rate by
+ * {@link TickDriver} and timestamped when sent, so a subscriber in this JVM measures
+ * generator-to-client latency against the same clock.
+ *
+ * The load shape and the pass/fail limits live in {@code load-test-thresholds.properties};
+ * any of them can be overridden with a system property of the same name, e.g.
+ * {@code mvn test -Pperformance -Dtest=FanOutLoadTest -Dload-test.stomp.subscribers=5000}. Subclasses
+ * that assert timing thresholds are tagged {@code load} and only run in that profile; those
+ * that check exact delivery run with every build.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.autoconfigure.exclude=" + LoadTestSupport.DATABASE_AUTOCONFIGURATION,
+        "app.data-generator.enabled=false",
+        "app.snapshot.enabled=false",
+        "app.default-symbols=AAPL",
+        "app.symbols.capacity=10000",
+        "logging.level.org.apache.kafka=WARN",
+        "logging.level.kafka=WARN",
+        "logging.level.state.change.logger=WARN"
+})
+@EmbeddedKafka(partitions = 3, topics = {"stock-prices", "processed-stock-prices", "order-book-events"})
+@Import(LoadTestSupport.DatabaseStandIn.class)
+@Slf4j
+public abstract class LoadTestSupport {
+
+    // The database stays out of the context; DatabaseStandIn provides the repository instead
+    protected static final String DATABASE_AUTOCONFIGURATION =
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration";
+
+    private static final Properties THRESHOLDS = loadThresholds();
+
+    // StockPriceDto.timestamp is serialized at millisecond precision in this pattern
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    private static final String TIMESTAMP_FIELD = "\"timestamp\":\"";
+    private static final String SEQUENCE_FIELD = "\"sequence\":";
+
+    @LocalServerPort
+    protected int port;
+
+    @Autowired
+    protected KafkaTemplate<String, StockPriceDto> kafkaTemplate;
+
+    @Autowired
+    protected QueryCounter queryCounter;
+
+    @Autowired
+    protected KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Value("${app.kafka.topics.stock-prices}")
+    protected String stockPricesTopic;
+
+    // The listeners start at the latest offset, so nothing may be produced before they own their partitions
+    @BeforeEach
+    void awaitPartitionAssignment() {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 3);
+        }
+    }
+
+    protected static int intSetting(String name) {
+        return Integer.parseInt(setting(name));
+    }
+
+    protected static double doubleSetting(String name) {
+        return Double.parseDouble(setting(name));
+    }
+
+    protected static String setting(String name) {
+        String value = System.getProperty(name, THRESHOLDS.getProperty(name));
+        if (value == null) {
+            throw new IllegalStateException("No " + name + " in load-test-thresholds.properties");
+        }
+        return value.trim();
+    }
+
+    protected static List<String> symbols(String prefix, int count) {
+        List<String> symbols = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            symbols.add(prefix + i);
+        }
+        return symbols;
+    }
+
+    protected WebSocketStompClient stompClient() {
+        // Tomcat's client closes on a text message over 8 KB, which a resume reply can exceed;
+        // browsers have no such limit, so allow what the STOMP client itself accepts
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(64 * 1024);
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient(container));
+        // Hands the frame body over as the raw bytes, whatever its content type
+        client.setMessageConverter(new SimpleMessageConverter());
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(1);
+        heartbeats.setThreadNamePrefix("stomp-client-hb-");
+        heartbeats.initialize();
+        client.setTaskScheduler(heartbeats);
+        return client;
+    }
+
+    // The raw WebSocket transport of the SockJS endpoint, as a non-browser client would use it
+    protected static String stompUrl(int port) {
+        return "ws://localhost:" + port + "/ws/websocket";
+    }
+
+    protected CompletableFuture<StompSession> connectAsync(WebSocketStompClient client) {
+        return connectAsync(client, port);
+    }
+
+    // Connects to another node than the test's own, e.g. a second instance started by the test
+    protected static CompletableFuture<StompSession> connectAsync(WebSocketStompClient client, int port) {
+        return client.connectAsync(stompUrl(port), new StompSessionHandlerAdapter() {
+            @Override
+            public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                        byte[] payload, Throwable exception) {
+                log.warn("STOMP client error on {}: {}", command, exception.toString());
+            }
+
+            @Override
+            public void handleTransportError(StompSession session, Throwable exception) {
+                log.warn("STOMP client transport error: {}", exception.toString());
+            }
+        });
+    }
+
+    // Subscribes with a handler that receives each frame's body as a String
+    protected static void subscribe(StompSession session, String destination, Consumer<String> onMessage) {
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                onMessage.accept(new String((byte[]) payload, StandardCharsets.UTF_8));
+            }
+        });
+    }
+
+    // Reads the tick timestamp out of a serialized StockPriceDto without a full JSON parse
+    protected static long tickTimestampMillis(String json) {
+        int start = json.indexOf(TIMESTAMP_FIELD);
+        if (start < 0) {
+            return -1;
+        }
+        start += TIMESTAMP_FIELD.length();
+        int end = json.indexOf('"', start);
+        return OffsetDateTime.parse(json.substring(start, end), TIMESTAMP).toInstant().toEpochMilli();
+    }
+
+    // The per-symbol sequence stamped by the consumer, or -1 if the tick has none
+    protected static long tickSequence(String json) {
+        int start = json.indexOf(SEQUENCE_FIELD);
+        if (start < 0) {
+            return -1;
+        }
+        start += SEQUENCE_FIELD.length();
+        int end = start;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) {
+            end++;
+        }
+        return end > start ? Long.parseLong(json, start, end, 10) : -1;
+    }
+
+    protected static Histogram latencyHistogram() {
+        return new ConcurrentHistogram(3);
+    }
+
+    protected static String percentiles(Histogram histogram) {
+        return String.format("p50 %d ms, p99 %d ms, p99.9 %d ms, max %d ms (%d samples)",
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue(), histogram.getTotalCount());
+    }
+
+    protected static void awaitQuiet(AtomicLong counter, long expected, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long last = -1;
+        long unchangedSince = System.currentTimeMillis();
+        while (System.currentTimeMillis() < deadline && counter.get() < expected) {
+            long current = counter.get();
+            if (current != last) {
+                last = current;
+                unchangedSince = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - unchangedSince > 3_000) {
+                return; // Nothing more is coming
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static Properties loadThresholds() {
+        try {
+            return PropertiesLoaderUtils.loadProperties(new ClassPathResource("load-test-thresholds.properties"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends ticks round-robin over a symbol list at a fixed rate, each stamped with the
+     * wall clock when it is handed to the producer, and counts what it sent per symbol
+     * from the moment {@link #startMeasuring()} is called.
+     */
+    protected final class TickDriver implements AutoCloseable {
+
+        private final List<String> symbols;
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final Map<String, AtomicLong> measuredBySymbol = new ConcurrentHashMap<>();
+        private final AtomicLong measured = new AtomicLong();
+        private volatile long measureFromMillis = Long.MAX_VALUE;
+        private volatile long measureUntilMillis = Long.MAX_VALUE;
+        private long sent;
+        private double price = 100.0;
+
+        TickDriver(List<String> symbols) {
+            this.symbols = symbols;
+            symbols.forEach(symbol -> measuredBySymbol.put(symbol, new AtomicLong()));
+        }
+
+        // Ticks are sent in 10ms batches; the fractional remainder carries over so the rate is exact on average
+        public TickDriver start(double ticksPerSecond) {
+            double perBatch = ticksPerSecond / 100.0;
+            double[] owed = {0};
+            scheduler.scheduleAtFixedRate(() -> {
+                owed[0] += perBatch;
+                for (; owed[0] >= 1; owed[0]--) {
+                    send();
+                }
+            }, 0, 10, TimeUnit.MILLISECONDS);
+            return this;
+        }
+
+        public void startMeasuring() {
+            measureFromMillis = System.currentTimeMillis();
+        }
+
+        public void stop() throws InterruptedException {
+            scheduler.shutdown();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            measureUntilMillis = System.currentTimeMillis();
+            kafkaTemplate.flush();
+        }
+
+        public boolean measured(long tickTimestampMillis) {
+            return tickTimestampMillis >= measureFromMillis && tickTimestampMillis <= measureUntilMillis;
+        }
+
+        public long measuredTicks() {
+            return measured.get();
+        }
+
+        public long measuredTicks(String symbol) {
+            return measuredBySymbol.get(symbol).get();
+        }
+
+        public long measureFromMillis() {
+            return measureFromMillis;
+        }
+
+        private void send() {
+            String symbol = symbols.get((int) (sent++ % symbols.size()));
+            price = price >= 200.0 ? 100.0 : price + 0.01;
+            BigDecimal tickPrice = BigDecimal.valueOf(Math.round(price * 100), 2);
+            Instant now = Instant.now();
+            StockPriceDto tick = StockPriceDto.builder()
+                    .symbol(symbol)
+                    .price(tickPrice)
+                    .open(BigDecimal.valueOf(100))
+                    .high(tickPrice)
+                    .low(BigDecimal.valueOf(100))
+                    .close(tickPrice)
+                    .volume(1_000L + sent)
+                    .timestamp(now)
+                    .build();
+            if (now.toEpochMilli() >= measureFromMillis) {
+                measured.incrementAndGet();
+                measuredBySymbol.get(symbol).incrementAndGet();
+            }
+            kafkaTemplate.send(stockPricesTopic, symbol, tick);
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            if (!scheduler.isShutdown()) {
+                stop();
+            }
+        }
+    }
+
+    /**
+     * Stands in for the database: every repository method is a no-op returning nothing,
+     * and each call is counted so a test can report the queries a scenario cost.
+     */
+    public static final class QueryCounter {
+
+        private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+        public long count(String method) {
+            AtomicLong count = calls.get(method);
+            return count != null ? count.get() : 0;
+        }
+
+        // Reads only; insertTick is the consumer's write path
+        public long reads() {
+            return calls.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals("insertTick"))
+                    .mapToLong(entry -> entry.getValue().get())
+                    .sum();
+        }
+
+        public void reset() {
+            calls.clear();
+        }
+
+        StockPriceRepository repository() {
+            return (StockPriceRepository) Proxy.newProxyInstance(StockPriceRepository.class.getClassLoader(),
+                    new Class<?>[]{StockPriceRepository.class}, (proxy, method, args) -> {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(this, args);
+                        }
+                        if (method.isDefault()) {
+                            // Default methods route to other repository methods, which are counted themselves
+                            return InvocationHandler.invokeDefault(proxy, method, args);
+                        }
+                        calls.computeIfAbsent(method.getName(), name -> new AtomicLong()).incrementAndGet();
+                        Class<?> type = method.getReturnType();
+                        if (type == Optional.class) {
+                            return Optional.empty();
+                        }
+                        if (List.class.isAssignableFrom(type)) {
+                            return List.of();
+                        }
+                        if (type == long.class) {
+                            return 0L;
+                        }
+                        return type == boolean.class ? false : null;
+                    });
+        }
+    }
+
+    @TestConfiguration
+    static class DatabaseStandIn {
+
+        @Bean
+        QueryCounter queryCounter() {
+            return new QueryCounter();
+        }
+
+        @Bean
+        StockPriceRepository stockPriceRepository(QueryCounter queryCounter) {
+            return queryCounter.repository();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.financialdatastreaming;
+
+import com.example.financialdatastreaming.dto.ResumeRequestDto;
+import com.example.financialdatastreaming.dto.ResumeResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reconnect storm: every subscriber drops at once, misses a stretch of ticks, then all
+ * reconnect together and ask {@code /app/resume} for what they missed, the way
+ * {@code WebSocketContext.js} does (resending an unanswered resume after a timeout).
+ * Measures the database queries each reconnect costs and the time from reconnecting to
+ * holding a gap-free sequence again, and checks that every client ends up consistent.
+ */
+@Tag("load")
+@Slf4j
+class ReconnectStormLoadTest extends LoadTestSupport {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void reconnectStormIsServedFromMemory() throws Exception {
+        int clientCount = intSetting("load-test.storm.clients");
+        int symbolCount = intSetting("load-test.storm.symbols");
+        List<String> symbols = symbols("STORM", symbolCount);
+        List<StormClient> clients = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            clients.add(new StormClient(symbols.get(i % symbolCount)));
+        }
+
+        WebSocketStompClient stompClient = stompClient();
+        try (TickDriver driver = new TickDriver(symbols)) {
+            for (StormClient client : clients) {
+                client.session = connectAsync(stompClient).get(60, TimeUnit.SECONDS);
+                subscribe(client.session, "/topic/stock/" + client.symbol,
+                        json -> client.lastSequence.accumulateAndGet(tickSequence(json), Math::max));
+            }
+            driver.start(doubleSetting("load-test.storm.ticks-per-second"));
+            awaitCondition(() -> clients.stream().allMatch(client -> client.lastSequence.get() > 0), 30_000,
+                    "every client receiving before the storm");
+
+            // Everyone drops at once and misses a stretch of ticks
+            clients.forEach(client -> client.session.disconnect());
+            Thread.sleep(intSetting("load-test.storm.outage-ms"));
+
+            queryCounter.reset();
+            long stormStart = System.nanoTime();
+            for (StormClient client : clients) {
+                client.reconnectStartNanos = System.nanoTime();
+                connectAsync(stompClient).thenAccept(session -> client.resubscribe(session));
+            }
+            // Unanswered resumes are sent again, as the browser client does
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(intSetting("load-test.storm.resume-timeout-ms"));
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (!clients.stream().allMatch(StormClient::consistent) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                clients.forEach(client -> client.resendIfUnanswered(timeoutNanos));
+            }
+            // Live ticks after the last answer can still reveal a hole, which the client then resumes
+            Thread.sleep(1_000);
+            while (!clients.stream().allMatch(StormClient::consistent) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                clients.forEach(client -> client.resendIfUnanswered(timeoutNanos));
+            }
+            driver.stop();
+
+            Histogram timeToConsistent = latencyHistogram();
+            Histogram resumeRoundTrip = latencyHistogram();
+            int inconsistent = 0;
+            int snapshots = 0;
+            long replayed = 0;
+            long timeoutResends = 0;
+            long gapResumes = 0;
+            long stormEnd = stormStart;
+            for (StormClient client : clients) {
+                timeoutResends += client.timeoutResends.get();
+                gapResumes += client.gapResumes.get();
+                replayed += client.replayedTicks;
+                if (client.snapshot) {
+                    snapshots++;
+                }
+                if (!client.consistent()) {
+                    inconsistent++;
+                    continue;
+                }
+                stormEnd = Math.max(stormEnd, client.consistentAtNanos);
+                timeToConsistent.recordValue(TimeUnit.NANOSECONDS.toMillis(
+                        client.consistentAtNanos - client.reconnectStartNanos));
+                resumeRoundTrip.recordValue(TimeUnit.NANOSECONDS.toMillis(
+                        client.consistentAtNanos - client.resumeSentNanos));
+            }
+            long queries = queryCounter.reads();
+            double queriesPerReconnect = (double) queries / clientCount;
+            long stormMillis = TimeUnit.NANOSECONDS.toMillis(stormEnd - stormStart);
+            log.info("Reconnect storm: {} clients on {} symbols; {} ticks replayed from memory, {} snapshots; "
+                            + "{} resumes resent after a timeout, {} sent again for a gap; {} DB queries ({} per "
+                            + "reconnect); time to consistent {}; last resume to consistent {}; all consistent "
+                            + "after {} ms; {} never consistent",
+                    clientCount, symbolCount, replayed, snapshots, timeoutResends, gapResumes, queries,
+                    String.format("%.2f", queriesPerReconnect), percentiles(timeToConsistent), percentiles(resumeRoundTrip), stormMillis,
+                    inconsistent);
+
+            assertThat(inconsistent).as("clients left without a gap-free sequence").isZero();
+            assertThat(snapshots).as("resumes that fell back to a snapshot").isLessThanOrEqualTo(
+                    intSetting("load-test.storm.max-snapshots"));
+            assertThat(queriesPerReconnect).as("DB queries per reconnect").isLessThanOrEqualTo(
+                    doubleSetting("load-test.storm.max-queries-per-reconnect"));
+            assertThat(timeToConsistent.getValueAtPercentile(99)).as("p99 time to consistent ms")
+                    .isLessThanOrEqualTo(intSetting("load-test.storm.max-p99-consistent-ms"));
+            assertThat(resumeRoundTrip.getValueAtPercentile(99)).as("p99 last resume to consistent ms")
+                    .isLessThanOrEqualTo(intSetting("load-test.storm.max-p99-resume-ms"));
+            assertThat(stormMillis).as("ms until every client consistent")
+                    .isLessThanOrEqualTo(intSetting("load-test.storm.max-storm-consistent-ms"));
+        } finally {
+            clients.stream().filter(client -> client.session != null && client.session.isConnected())
+                    .forEach(client -> client.session.disconnect());
+            stompClient.stop();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition, long timeoutMillis,
+                                       String description) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as(description).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    /*
+     * Follows the browser client: live ticks and replayed ticks both count towards the
+     * sequence, and a hole left once the resume is answered (the resume was served before the
+     * live subscription took effect) is filled by resuming again from the last contiguous tick.
+     */
+    private final class StormClient {
+        private final String symbol;
+        private final AtomicLong lastSequence = new AtomicLong();
+        private final AtomicInteger timeoutResends = new AtomicInteger();
+        private final AtomicInteger gapResumes = new AtomicInteger();
+        private final NavigableSet<Long> ahead = new TreeSet<>();
+        private volatile StompSession session;
+        private volatile long contiguous;
+        private volatile boolean answered;
+        private volatile boolean resumeInFlight;
+        private volatile long replayedTicks;
+        private volatile boolean snapshot;
+        private volatile long reconnectStartNanos;
+        private volatile long resumeSentNanos;
+        private volatile long consistentAtNanos;
+
+        StormClient(String symbol) {
+            this.symbol = symbol;
+        }
+
+        // Same order as the browser: the reply queue and the live topic first, then the resume request
+        void resubscribe(StompSession session) {
+            this.session = session;
+            contiguous = lastSequence.get();
+            subscribe(session, "/user/queue/resume", json -> {
+                try {
+                    onResume(objectMapper.readValue(json, ResumeResponseDto.class));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            subscribe(session, "/topic/stock/" + symbol, json -> onTick(tickSequence(json)));
+            sendResume();
+        }
+
+        synchronized void sendResume() {
+            resumeInFlight = true;
+            resumeSentNanos = System.nanoTime();
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination("/app/resume");
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            try {
+                session.send(headers, objectMapper.writeValueAsBytes(new ResumeRequestDto(symbol, contiguous)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        synchronized void resendIfUnanswered(long timeoutNanos) {
+            if (resumeInFlight && System.nanoTime() - resumeSentNanos > timeoutNanos) {
+                timeoutResends.incrementAndGet();
+                sendResume();
+            }
+        }
+
+        synchronized void onResume(ResumeResponseDto response) {
+            if (!response.getSymbol().equals(symbol) || !resumeInFlight) {
+                return;
+            }
+            resumeInFlight = false;
+            answered = true;
+            replayedTicks += response.getTicks().size();
+            if (response.isSnapshot()) {
+                snapshot = true;
+                advanceTo(response.getLatestSequence());
+            }
+            response.getTicks().forEach(tick -> onSequence(tick.getSequence()));
+            checkConsistent();
+        }
+
+        synchronized void onTick(long sequence) {
+            onSequence(sequence);
+            if (answered && !resumeInFlight) {
+                checkConsistent();
+            }
+        }
+
+        private void onSequence(long sequence) {
+            if (sequence == contiguous + 1) {
+                advanceTo(sequence);
+            } else if (sequence > contiguous + 1) {
+                ahead.add(sequence);
+            }
+        }
+
+        private void advanceTo(long sequence) {
+            contiguous = Math.max(contiguous, sequence);
+            ahead.headSet(contiguous, true).clear();
+            while (!ahead.isEmpty() && ahead.first() == contiguous + 1) {
+                contiguous = ahead.pollFirst();
+            }
+        }
+
+        private void checkConsistent() {
+            if (ahead.isEmpty()) {
+                if (consistentAtNanos == 0) {
+                    consistentAtNanos = System.nanoTime();
+                }
+            } else {
+                consistentAtNanos = 0;
+                gapResumes.incrementAndGet();
+                sendResume();
+            }
+        }
+
+        synchronized boolean consistent() {
+            return answered && !resumeInFlight && ahead.isEmpty();
+        }
+    }
+}
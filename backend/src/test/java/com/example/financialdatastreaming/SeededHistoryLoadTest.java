@@ -0,0 +1,146 @@
+package com.example.financialdatastreaming;
+
+import com.example.financialdatastreaming.service.StockDataGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * History seeded by {@link StockDataGenerator} while live ticks flow: subscribers receive
+ * the backfilled ticks, but the pipeline latency timers measure the live ones only, so a
+ * day-old seeded tick never shows up as a day of latency.
+ */
+@Slf4j
+class SeededHistoryLoadTest extends LoadTestSupport {
+
+    private static final String SYMBOL = "AAPL";
+    private static final String HISTORICAL_FIELD = "\"historical\":true";
+    private static final String DATA = "data: ";
+
+    @Autowired
+    private StockDataGenerator stockDataGenerator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void seededHistoryIsDeliveredButLeftOutOfTheLatencyStatistics() throws Exception {
+        int days = intSetting("load-test.seed.days");
+        long seeded = days * 8L * 60;
+        Timer stompLatency = meterRegistry.get("stock.pipeline.latency").tag("transport", "stomp").timer();
+        Timer sseLatency = meterRegistry.get("stock.pipeline.latency").tag("transport", "sse").timer();
+
+        Delivered stomp = new Delivered();
+        Delivered sse = new Delivered();
+        WebSocketStompClient stompClient = stompClient();
+        HttpClient httpClient = HttpClient.newHttpClient();
+        StompSession session = connectAsync(stompClient).get(60, TimeUnit.SECONDS);
+        CompletableFuture<HttpResponse<Stream<String>>> sseResponse = null;
+        try {
+            subscribe(session, "/topic/stock/" + SYMBOL, stomp::onTick);
+            sseResponse = httpClient.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                            + "/api/stock-prices/stream?symbols=" + SYMBOL))
+                    .header("Accept", "text/event-stream")
+                    .build(), HttpResponse.BodyHandlers.ofLines());
+            sseResponse.thenAcceptAsync(response -> response.body()
+                    .filter(line -> line.startsWith(DATA))
+                    .forEach(line -> sse.onTick(line.substring(DATA.length()))));
+
+            // Live ticks until both subscriptions deliver, then quiet, so the timers start from a settled count
+            try (TickDriver warmup = new TickDriver(List.of(SYMBOL))) {
+                warmup.start(doubleSetting("load-test.seed.ticks-per-second"));
+                long receivingBy = System.currentTimeMillis() + 30_000;
+                while (stomp.live.get() == 0 || sse.live.get() == 0) {
+                    assertThat(System.currentTimeMillis()).as("both transports receiving").isLessThan(receivingBy);
+                    Thread.sleep(50);
+                }
+            }
+            awaitQuiet(stomp.live, Long.MAX_VALUE, 30_000);
+            awaitQuiet(sse.live, Long.MAX_VALUE, 30_000);
+            long stompTimedBefore = stompLatency.count();
+            long sseTimedBefore = sseLatency.count();
+            stomp.live.set(0);
+            sse.live.set(0);
+
+            long liveTicks;
+            try (TickDriver driver = new TickDriver(List.of(SYMBOL))) {
+                stomp.driver = driver;
+                driver.startMeasuring();
+                driver.start(doubleSetting("load-test.seed.ticks-per-second"));
+                stockDataGenerator.seedHistoricalData(days);
+                Thread.sleep(TimeUnit.SECONDS.toMillis(intSetting("load-test.seed.measure-seconds")));
+                driver.stop();
+                liveTicks = driver.measuredTicks();
+            }
+            awaitQuiet(stomp.historical, seeded, 30_000);
+            awaitQuiet(sse.historical, seeded, 30_000);
+            awaitQuiet(stomp.live, liveTicks, 30_000);
+            awaitQuiet(sse.live, liveTicks, 30_000);
+
+            long stompTimed = stompLatency.count() - stompTimedBefore;
+            long sseTimed = sseLatency.count() - sseTimedBefore;
+            log.info("Seeded history: {} historical ticks alongside {} live; STOMP delivered {} historical and {} "
+                            + "live, timed {} (max {} ms); SSE delivered {} historical and {} live, timed {} "
+                            + "(max {} ms); client-side live {}",
+                    seeded, liveTicks, stomp.historical.get(), stomp.live.get(), stompTimed,
+                    Math.round(stompLatency.max(TimeUnit.MILLISECONDS)), sse.historical.get(), sse.live.get(),
+                    sseTimed, Math.round(sseLatency.max(TimeUnit.MILLISECONDS)), percentiles(stomp.latency));
+
+            assertThat(stomp.historical.get()).as("seeded ticks delivered over STOMP").isEqualTo(seeded);
+            assertThat(sse.historical.get()).as("seeded ticks delivered over SSE").isEqualTo(seeded);
+            assertThat(stomp.live.get()).as("live ticks delivered over STOMP").isEqualTo(liveTicks);
+            assertThat(sse.live.get()).as("live ticks delivered over SSE").isEqualTo(liveTicks);
+            // One fan-out per tick and a single SSE connection: the timers saw the live ticks and nothing else
+            assertThat(stompTimed).as("STOMP deliveries timed").isEqualTo(liveTicks);
+            assertThat(sseTimed).as("SSE deliveries timed").isEqualTo(liveTicks);
+            long maxLatencyMs = TimeUnit.SECONDS.toMillis(intSetting("load-test.seed.max-latency-seconds"));
+            assertThat(stompLatency.max(TimeUnit.MILLISECONDS)).as("STOMP max latency ms").isLessThan(maxLatencyMs);
+            assertThat(sseLatency.max(TimeUnit.MILLISECONDS)).as("SSE max latency ms").isLessThan(maxLatencyMs);
+            assertThat(stomp.latency.getMaxValue()).as("client-side max latency ms").isLessThan(maxLatencyMs);
+        } finally {
+            if (sseResponse != null) {
+                sseResponse.cancel(true);
+                sseResponse.thenAccept(response -> response.body().close());
+            }
+            session.disconnect();
+            stompClient.stop();
+        }
+    }
+
+    // What one transport's subscriber received, split into seeded and live ticks
+    private static final class Delivered {
+        private final AtomicLong historical = new AtomicLong();
+        private final AtomicLong live = new AtomicLong();
+        private final Histogram latency = latencyHistogram();
+        private volatile TickDriver driver;
+
+        void onTick(String json) {
+            if (json.contains(HISTORICAL_FIELD)) {
+                historical.incrementAndGet();
+                return;
+            }
+            live.incrementAndGet();
+            long generated = tickTimestampMillis(json);
+            if (driver != null && driver.measured(generated)) {
+                latency.recordValue(Math.max(0, System.currentTimeMillis() - generated));
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.financialdatastreaming;
+
+import com.example.financialdatastreaming.service.StockPriceStreamService;
+import com.example.financialdatastreaming.service.SymbolRegistry;
+import com.example.financialdatastreaming.service.WebSocketFanOutMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The two push transports side by side under the same ticks: SSE clients on
+ * {@code /api/stock-prices/stream} and STOMP sessions on {@code /topic/stock/*}, more of
+ * each than Tomcat has request threads. Reports generator-to-client latency per transport,
+ * the connections each side still holds at the end, and how many Tomcat request threads are
+ * busy while they stream, which stays far below the connection count because neither
+ * transport parks a thread per client.
+ */
+@Slf4j
+@Tag("load")
+class SseVsStompLoadTest extends LoadTestSupport {
+
+    @Autowired
+    private StockPriceStreamService streamService;
+
+    @Autowired
+    private WebSocketFanOutMetrics fanOutMetrics;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @Autowired
+    private ServletWebServerApplicationContext webServerContext;
+
+    @Test
+    void sseAndStompHoldTheirConnectionsWithinTheirLatencyThresholds() throws Exception {
+        int connections = intSetting("load-test.transport.connections");
+        int symbolCount = intSetting("load-test.transport.symbols");
+        double ticksPerSecond = doubleSetting("load-test.transport.ticks-per-second");
+        List<String> symbols = symbols("CMP", symbolCount);
+
+        Transport sse = new Transport("SSE", connections);
+        Transport stomp = new Transport("STOMP", connections);
+        // The client's own threads stay few too: lines are pushed to subscribers, not read by a blocked thread
+        ExecutorService sseClientThreads = Executors.newFixedThreadPool(4);
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(sseClientThreads)
+                .build();
+        List<SseStream> sseStreams = new ArrayList<>(connections);
+        WebSocketStompClient stompClient = stompClient();
+        List<StompSession> sessions = new ArrayList<>(connections);
+        try (TickDriver driver = new TickDriver(symbols)) {
+            // The stream only accepts symbols this node has already seen
+            driver.start(ticksPerSecond);
+            long registeredBy = System.currentTimeMillis() + 30_000;
+            while (!symbols.stream().allMatch(symbol -> symbolRegistry.find(symbol) >= 0)) {
+                assertThat(System.currentTimeMillis()).as("symbols registered").isLessThan(registeredBy);
+                Thread.sleep(50);
+            }
+
+            for (int i = 0; i < connections; i++) {
+                SseStream stream = new SseStream(sse, i, driver);
+                sseStreams.add(stream);
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                                + "/api/stock-prices/stream?symbols=" + symbols.get(i % symbolCount)))
+                        .header("Accept", "text/event-stream")
+                        .build();
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(stream));
+            }
+            for (int i = 0; i < connections; i++) {
+                int client = i;
+                StompSession session = connectAsync(stompClient).get(60, TimeUnit.SECONDS);
+                sessions.add(session);
+                subscribe(session, "/topic/stock/" + symbols.get(i % symbolCount),
+                        json -> stomp.onTick(client, json, driver));
+            }
+
+            long warmupUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(
+                    intSetting("load-test.transport.warmup-seconds"));
+            while (System.currentTimeMillis() < warmupUntil
+                    || sse.warmedUp.get() < connections || stomp.warmedUp.get() < connections) {
+                assertThat(System.currentTimeMillis() - warmupUntil)
+                        .as("clients receiving during warm-up (SSE %d, STOMP %d of %d)",
+                                sse.warmedUp.get(), stomp.warmedUp.get(), connections)
+                        .isLessThan(30_000);
+                Thread.sleep(50);
+            }
+
+            // The pool grew to serve the connect burst; what matters is how much of it streaming keeps busy
+            ThreadPoolExecutor requestThreads = (ThreadPoolExecutor) ((TomcatWebServer) webServerContext
+                    .getWebServer()).getTomcat().getConnector().getProtocolHandler().getExecutor();
+            driver.startMeasuring();
+            long measureUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(
+                    intSetting("load-test.transport.measure-seconds"));
+            int busyThreads = 0;
+            while (System.currentTimeMillis() < measureUntil) {
+                busyThreads = Math.max(busyThreads, requestThreads.getActiveCount());
+                Thread.sleep(20);
+            }
+            int sseHeld = streamService.getConnectionCount();
+            long stompHeld = fanOutMetrics.getOpenSessionCount();
+            driver.stop();
+
+            long expected = 0;
+            for (int i = 0; i < connections; i++) {
+                expected += driver.measuredTicks(symbols.get(i % symbolCount));
+            }
+            awaitQuiet(sse.received, expected, 30_000);
+            awaitQuiet(stomp.received, expected, 30_000);
+
+            log.info("SSE vs STOMP: {} connections each on {} symbols, driven {} ticks/s; {} SSE + {} STOMP "
+                            + "connections held, at most {} of {} Tomcat request threads busy",
+                    connections, symbolCount, Math.round(ticksPerSecond), sseHeld, stompHeld, busyThreads,
+                    requestThreads.getPoolSize());
+            for (Transport transport : List.of(sse, stomp)) {
+                log.info("  {} {}; lost {} of {} deliveries", transport.name,
+                        percentiles(transport.latency), expected - transport.received.get(), expected);
+            }
+
+            assertThat(sseHeld).as("SSE connections held").isEqualTo(connections);
+            assertThat(stompHeld).as("STOMP sessions held").isEqualTo(connections);
+            assertThat(busyThreads).as("busy Tomcat request threads for %d connections", 2 * connections)
+                    .isLessThanOrEqualTo(intSetting("load-test.transport.max-busy-request-threads"));
+            for (Transport transport : List.of(sse, stomp)) {
+                assertThat(transport.received.get()).as("%s deliveries", transport.name).isEqualTo(expected);
+                assertThat(transport.latency.getValueAtPercentile(99)).as("%s p99 ms", transport.name)
+                        .isLessThanOrEqualTo(intSetting("load-test.transport.max-p99-ms"));
+            }
+        } finally {
+            sseStreams.forEach(SseStream::cancel);
+            sessions.forEach(StompSession::disconnect);
+            stompClient.stop();
+            sseClientThreads.shutdownNow();
+        }
+    }
+
+    // What one transport's clients received, measured the same way for both
+    private static final class Transport {
+        private final String name;
+        private final Histogram latency = latencyHistogram();
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicInteger warmedUp = new AtomicInteger();
+        private final boolean[] receiving;
+
+        Transport(String name, int clients) {
+            this.name = name;
+            this.receiving = new boolean[clients];
+        }
+
+        // Each client's ticks arrive on one thread at a time, so its own flag needs no lock
+        void onTick(int client, String json, TickDriver driver) {
+            long now = System.currentTimeMillis();
+            if (!receiving[client]) {
+                receiving[client] = true;
+                warmedUp.incrementAndGet();
+            }
+            long generated = tickTimestampMillis(json);
+            if (driver.measured(generated)) {
+                latency.recordValue(Math.max(0, now - generated));
+                received.incrementAndGet();
+            }
+        }
+    }
+
+    // One SSE client: takes the data line of each price event, ignores ids, event names and heartbeats
+    private static final class SseStream implements Flow.Subscriber<String> {
+        private static final String DATA = "data: ";
+
+        private final Transport transport;
+        private final int client;
+        private final TickDriver driver;
+        private volatile Flow.Subscription subscription;
+
+        SseStream(Transport transport, int client, TickDriver driver) {
+            this.transport = transport;
+            this.client = client;
+            this.driver = driver;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith(DATA)) {
+                transport.onTick(client, line.substring(DATA.length()), driver);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.warn("SSE client {} failed: {}", client, throwable.toString());
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        void cancel() {
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
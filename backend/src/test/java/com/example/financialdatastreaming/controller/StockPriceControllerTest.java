@@ -0,0 +1,50 @@
+package com.example.financialdatastreaming.controller;
+
+import com.example.financialdatastreaming.service.MarketRankingService;
+import com.example.financialdatastreaming.service.OrderBookEngine;
+import com.example.financialdatastreaming.service.StockPriceService;
+import com.example.financialdatastreaming.service.StockPriceStreamService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StockPriceControllerTest {
+
+    private StockPriceService stockPriceService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        stockPriceService = mock(StockPriceService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new StockPriceController(stockPriceService,
+                mock(StockPriceStreamService.class), mock(MarketRankingService.class), mock(OrderBookEngine.class)))
+                .build();
+    }
+
+    @Test
+    void invalidIntervalIsABadRequest() throws Exception {
+        when(stockPriceService.getPriceHistory(anyString(), any(), any(), eq("5x"), any()))
+                .thenThrow(new IllegalArgumentException("Invalid interval unit: 5x"));
+
+        mockMvc.perform(get("/api/stock-prices/AAPL/candles").param("interval", "5x"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid interval unit: 5x"));
+        mockMvc.perform(post("/api/stock-prices/AAPL/history")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"from\":\"2024-01-01T00:00:00Z\",\"to\":\"2024-02-01T00:00:00Z\","
+                                + "\"interval\":\"5x\",\"limit\":500}"))
+                .andExpect(status().isBadRequest());
+    }
+}
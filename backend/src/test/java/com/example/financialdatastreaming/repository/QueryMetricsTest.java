@@ -0,0 +1,70 @@
+package com.example.financialdatastreaming.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QueryMetrics queryMetrics = new QueryMetrics(meterRegistry);
+
+    @Test
+    void metersAreSharedByEveryResolutionOfAMethod() throws Exception {
+        Method method = StockPriceRepository.class.getMethod("findTopBySymbolOrderByTimestampDesc", String.class);
+
+        assertThat(queryMetrics.meters("StockPriceRepository", method))
+                .isSameAs(queryMetrics.meters("StockPriceRepository", method));
+        assertThat(queryMetrics.meters("StockPriceRepository", method).name())
+                .isEqualTo("StockPriceRepository.findTopBySymbolOrderByTimestampDesc");
+    }
+
+    // A query issued inside another keeps its own pool wait, and the outer one resumes counting after it
+    @Test
+    void poolWaitIsChargedToTheInnermostRunningQuery() throws Throwable {
+        QueryMetrics.QueryMeters outer = meters("outer");
+        QueryMetrics.QueryMeters inner = meters("inner");
+
+        queryMetrics.invoke(outer, invocation(() -> {
+            QueryMetrics.recordPoolWait(TimeUnit.MILLISECONDS.toNanos(1));
+            queryMetrics.invoke(inner, invocation(() -> {
+                QueryMetrics.recordPoolWait(TimeUnit.MILLISECONDS.toNanos(5));
+                return List.of();
+            }));
+            QueryMetrics.recordPoolWait(TimeUnit.MILLISECONDS.toNanos(2));
+            return List.of("row");
+        }));
+        // Outside any query a checkout is not charged to anything
+        QueryMetrics.recordPoolWait(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat(outer.poolWait().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(3.0);
+        assertThat(inner.poolWait().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(5.0);
+        assertThat(outer.rows().totalAmount()).isEqualTo(1.0);
+        assertThat(inner.rows().totalAmount()).isZero();
+    }
+
+    private QueryMetrics.QueryMeters meters(String methodName) throws NoSuchMethodException {
+        return queryMetrics.meters(methodName, Object.class.getMethod("toString"));
+    }
+
+    private static MethodInvocation invocation(Query query) throws Throwable {
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.proceed()).thenAnswer((Answer<Object>) ignored -> query.run());
+        when(invocation.getArguments()).thenReturn(new Object[0]);
+        return invocation;
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        Object run() throws Throwable;
+    }
+}
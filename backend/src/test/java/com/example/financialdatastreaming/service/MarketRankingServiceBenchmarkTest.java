@@ -0,0 +1,71 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-tick cost of an incremental ranking update. Ticks are built up front so only
+ * {@link MarketRankingService#update} is timed; the budget is loose enough for a shared
+ * CI machine and exists to catch a regression back to a full re-sort per tick.
+ */
+@Tag("benchmark")
+@Slf4j
+class MarketRankingServiceBenchmarkTest {
+
+    private static final int TICKS = 200_000;
+    private static final double BUDGET_NANOS_PER_UPDATE = 20_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {15, 10_000})
+    void updateCostStaysWithinBudget(int symbols) {
+        MarketRankingService rankingService = new MarketRankingService(
+                new SimpMessagingTemplate((message, timeout) -> true), new SymbolRegistry(new SimpleMeterRegistry(), 20_000));
+        ReflectionTestUtils.setField(rankingService, "rankingsTopic", "/topic/rankings");
+        ReflectionTestUtils.setField(rankingService, "topN", 10);
+
+        Random random = new Random(42);
+        String[] names = new String[symbols];
+        Instant start = Instant.now();
+        for (int i = 0; i < symbols; i++) {
+            names[i] = "SYM" + i;
+            rankingService.update(MarketRankingServiceTest.tick(names[i], 100.0, 100.0, start));
+        }
+        // Every tick newer than the last, so none is dropped as late
+        StockPriceDto[] warmup = ticks(names, random, start, 1, TICKS / 2);
+        StockPriceDto[] ticks = ticks(names, random, start, 1 + TICKS / 2, TICKS);
+
+        // Warm up, then measure
+        for (StockPriceDto tick : warmup) {
+            rankingService.update(tick);
+        }
+        long startNanos = System.nanoTime();
+        for (StockPriceDto tick : ticks) {
+            rankingService.update(tick);
+        }
+        double nanosPerUpdate = (System.nanoTime() - startNanos) / (double) TICKS;
+
+        log.info("MarketRankingService.update with {} symbols: {} ns/tick", symbols, Math.round(nanosPerUpdate));
+        assertThat(nanosPerUpdate).isLessThan(BUDGET_NANOS_PER_UPDATE);
+    }
+
+    private static StockPriceDto[] ticks(String[] names, Random random, Instant start, int firstMicros, int count) {
+        StockPriceDto[] ticks = new StockPriceDto[count];
+        for (int i = 0; i < count; i++) {
+            ticks[i] = MarketRankingServiceTest.tick(names[random.nextInt(names.length)], 100.0,
+                    95.0 + random.nextDouble() * 10.0, start.plus(firstMicros + i, ChronoUnit.MICROS));
+        }
+        return ticks;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.MarketRankingsDto;
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarketRankingServiceTest {
+
+    private MarketRankingService rankingService;
+
+    @BeforeEach
+    void setUp() {
+        rankingService = new MarketRankingService(new SimpMessagingTemplate((message, timeout) -> true),
+                new SymbolRegistry(new SimpleMeterRegistry(), 100));
+        ReflectionTestUtils.setField(rankingService, "rankingsTopic", "/topic/rankings");
+        ReflectionTestUtils.setField(rankingService, "topN", 10);
+    }
+
+    @Test
+    void gainersAndLosersOnlyListSymbolsMovingThatWay() {
+        // 15 symbols, 12 up and 3 down: a top-10 losers list must not borrow from the gainers
+        for (int i = 0; i < 15; i++) {
+            double change = i < 12 ? 1.0 + i : -1.0 - i;
+            rankingService.update(tick("S" + i, 100.0, 100.0 + change));
+        }
+
+        MarketRankingsDto rankings = rankingService.getRankings();
+
+        assertThat(rankings.getTopGainers()).hasSize(10)
+                .allSatisfy(entry -> assertThat(entry.getValue()).isPositive());
+        assertThat(rankings.getTopLosers()).hasSize(3)
+                .allSatisfy(entry -> assertThat(entry.getValue()).isNegative());
+        assertThat(rankings.getTopLosers().get(0).getSymbol()).isEqualTo("S14");
+    }
+
+    @Test
+    void unchangedSymbolsAreNeitherGainersNorLosers() {
+        rankingService.update(tick("FLAT", 100.0, 100.0));
+
+        MarketRankingsDto rankings = rankingService.getRankings();
+
+        assertThat(rankings.getTopGainers()).isEmpty();
+        assertThat(rankings.getTopLosers()).isEmpty();
+        assertThat(rankings.getMostActive()).hasSize(1);
+    }
+
+    @Test
+    void lateTicksDoNotMoveASymbolBackInTime() {
+        Instant now = Instant.now();
+        rankingService.update(tick("LATE", 100.0, 110.0, now));
+        rankingService.update(tick("LATE", 100.0, 90.0, now.minusSeconds(60)));
+
+        MarketRankingsDto rankings = rankingService.getRankings();
+
+        assertThat(rankings.getTopGainers()).extracting(MarketRankingsDto.Entry::getSymbol).containsExactly("LATE");
+        assertThat(rankings.getTopGainers().get(0).getPrice()).isEqualByComparingTo("110.0");
+        assertThat(rankings.getTopLosers()).isEmpty();
+    }
+
+    @Test
+    void publishedListsTrackAFullRebuildWhenOnlyTicksInsideTheCutoffsTriggerOne() {
+        AtomicReference<MarketRankingsDto> published = new AtomicReference<>();
+        MarketRankingService publishing = new MarketRankingService(
+                new SimpMessagingTemplate((message, timeout) -> true) {
+                    @Override
+                    public void convertAndSend(String destination, Object payload) {
+                        published.set((MarketRankingsDto) payload);
+                    }
+                }, new SymbolRegistry(new SimpleMeterRegistry(), 100));
+        ReflectionTestUtils.setField(publishing, "rankingsTopic", "/topic/rankings");
+        ReflectionTestUtils.setField(publishing, "topN", 10);
+
+        Random random = new Random(7);
+        double[] prices = new double[50];
+        long[] volumes = new long[50];
+        Arrays.fill(prices, 100.0);
+        for (int i = 0; i < 20_000; i++) {
+            int symbol = random.nextInt(prices.length);
+            prices[symbol] = Math.max(1.0, prices[symbol] * (1 + random.nextGaussian() * 0.002));
+            volumes[symbol] += random.nextInt(10_000);
+            publishing.update(StockPriceDto.builder()
+                    .symbol("S" + symbol)
+                    .open(BigDecimal.valueOf(100.0))
+                    .price(BigDecimal.valueOf(prices[symbol]))
+                    .high(BigDecimal.valueOf(Math.max(100.0, prices[symbol])))
+                    .low(BigDecimal.valueOf(Math.min(100.0, prices[symbol])))
+                    .volume(volumes[symbol])
+                    .timestamp(Instant.now())
+                    .build());
+
+            MarketRankingsDto expected = publishing.getRankings();
+            MarketRankingsDto actual = published.get();
+            assertThat(symbols(actual.getTopGainers())).isEqualTo(symbols(expected.getTopGainers()));
+            assertThat(symbols(actual.getTopLosers())).isEqualTo(symbols(expected.getTopLosers()));
+            assertThat(symbols(actual.getMostActive())).isEqualTo(symbols(expected.getMostActive()));
+            assertThat(symbols(actual.getWidestRange())).isEqualTo(symbols(expected.getWidestRange()));
+        }
+    }
+
+    private static List<String> symbols(List<MarketRankingsDto.Entry> entries) {
+        return entries.stream().map(MarketRankingsDto.Entry::getSymbol).toList();
+    }
+
+    static StockPriceDto tick(String symbol, double open, double price) {
+        return tick(symbol, open, price, Instant.now());
+    }
+
+    static StockPriceDto tick(String symbol, double open, double price, Instant timestamp) {
+        return StockPriceDto.builder()
+                .symbol(symbol)
+                .open(BigDecimal.valueOf(open))
+                .price(BigDecimal.valueOf(price))
+                .high(BigDecimal.valueOf(Math.max(open, price)))
+                .low(BigDecimal.valueOf(Math.min(open, price)))
+                .volume(1000L)
+                .timestamp(timestamp)
+                .build();
+    }
+}
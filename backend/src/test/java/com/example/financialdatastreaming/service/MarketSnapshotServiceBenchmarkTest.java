@@ -0,0 +1,94 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Snapshot write and restore for a 10k-symbol market; the restore is what a warm
+ * restart waits on before the Kafka listeners start.
+ */
+@Tag("benchmark")
+@Slf4j
+class MarketSnapshotServiceBenchmarkTest {
+
+    private static final int SYMBOLS = 10_000;
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesAndRestoresTenThousandSymbolsQuickly() throws Exception {
+        SymbolRegistry sourceRegistry = new SymbolRegistry(new SimpleMeterRegistry(), 20_000);
+        MarketState source = new MarketState(sourceRegistry);
+        Map<String, StockPriceDto> generatorPrices = new HashMap<>();
+        for (int i = 0; i < SYMBOLS; i++) {
+            StockPriceDto tick = MarketRankingServiceTest.tick("SYM" + i, 100.0, 100.0 + i % 37 - 18);
+            source.update(tick);
+            generatorPrices.put(tick.getSymbol(), tick);
+        }
+        for (int partition = 0; partition < 3; partition++) {
+            source.recordOffset(partition, 1_000_000L + partition);
+        }
+        StockDataGenerator generator = mock(StockDataGenerator.class);
+        when(generator.getLastPrices()).thenReturn(generatorPrices);
+        Path path = dir.resolve("market-state.snapshot");
+        MarketSnapshotService writer = service(source, sourceRegistry, generator, path);
+
+        long writeNanos = Long.MAX_VALUE;
+        long restoreNanos = Long.MAX_VALUE;
+        MarketState restored = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            writer.writeSnapshot();
+            writeNanos = Math.min(writeNanos, System.nanoTime() - start);
+
+            // A fresh registry per restore, as in a restarted process
+            SymbolRegistry registry = new SymbolRegistry(new SimpleMeterRegistry(), 20_000);
+            restored = new MarketState(registry);
+            MarketSnapshotService reader = service(restored, registry, mock(StockDataGenerator.class), path);
+            start = System.nanoTime();
+            reader.restore();
+            restoreNanos = Math.min(restoreNanos, System.nanoTime() - start);
+        }
+
+        log.info("Snapshot of {} symbols: {} bytes, write {}ms, restore {}ms (best of {})",
+                SYMBOLS, Files.size(path), String.format("%.1f", writeNanos / 1e6),
+                String.format("%.1f", restoreNanos / 1e6), ROUNDS);
+        assertThat(restored.getLatestTicks()).hasSize(SYMBOLS);
+        assertThat(restored.getAppliedOffset(2)).isEqualTo(1_000_002L);
+        assertThat(restored.getLatest("SYM42").getPrice())
+                .isEqualByComparingTo(source.getLatest("SYM42").getPrice());
+        assertThat(writeNanos).isLessThan(1_000_000_000L);
+        assertThat(restoreNanos).isLessThan(1_000_000_000L);
+    }
+
+    private static MarketSnapshotService service(MarketState marketState, SymbolRegistry symbolRegistry,
+                                                 StockDataGenerator generator, Path path) {
+        MarketRankingService rankings = new MarketRankingService(
+                new SimpMessagingTemplate((message, timeout) -> true), symbolRegistry);
+        ReflectionTestUtils.setField(rankings, "rankingsTopic", "/topic/rankings");
+        ReflectionTestUtils.setField(rankings, "topN", 10);
+        MarketSnapshotService service = new MarketSnapshotService(marketState, generator, rankings,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(service, "snapshotPath", path.toString());
+        ReflectionTestUtils.setField(service, "stockPricesTopic", "stock-prices");
+        return service;
+    }
+}
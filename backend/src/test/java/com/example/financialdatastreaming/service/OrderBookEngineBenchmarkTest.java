@@ -0,0 +1,77 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Depth-event throughput through the engine on one thread, with the event mix the
+ * generator produces: mostly size changes on existing levels, some adds and deletes.
+ */
+@Tag("benchmark")
+@Slf4j
+class OrderBookEngineBenchmarkTest {
+
+    private static final int SYMBOLS = 100;
+    private static final int LEVELS = 20;
+    private static final int EVENTS = 1_000_000;
+
+    @Test
+    void appliesAtLeastHalfAMillionUpdatesPerSecond() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SymbolRegistry symbolRegistry = new SymbolRegistry(meterRegistry, 1000);
+        OrderBookEngine engine = new OrderBookEngine(new SimpMessagingTemplate((message, timeout) -> true),
+                new StockTopicDestinations(symbolRegistry), symbolRegistry, meterRegistry);
+        ReflectionTestUtils.setField(engine, "publishedDepth", 10);
+
+        OrderBookEventDto[] events = events();
+        run(engine, events); // warm-up on the same books; sequences keep running so nothing resyncs
+        long start = System.nanoTime();
+        run(engine, events);
+        long elapsedNanos = System.nanoTime() - start;
+
+        double perSecond = EVENTS / (elapsedNanos / 1e9);
+        log.info("Order book: {} updates/sec ({} ns/update) across {} symbols",
+                Math.round(perSecond), elapsedNanos / EVENTS, SYMBOLS);
+        assertThat(meterRegistry.get("stock.orderbook.resyncs").counters())
+                .allSatisfy(counter -> assertThat(counter.count()).isZero());
+        assertThat(perSecond).isGreaterThan(500_000);
+    }
+
+    private static void run(OrderBookEngine engine, OrderBookEventDto[] events) {
+        for (OrderBookEventDto event : events) {
+            event.setSequence(event.getSequence() + EVENTS / SYMBOLS);
+            engine.apply(event);
+        }
+    }
+
+    private static OrderBookEventDto[] events() {
+        Random random = new Random(42);
+        long[] sequences = new long[SYMBOLS];
+        OrderBookEventDto[] events = new OrderBookEventDto[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            int symbol = i % SYMBOLS;
+            boolean bid = random.nextBoolean();
+            int level = 1 + random.nextInt(LEVELS);
+            double roll = random.nextDouble();
+            events[i] = OrderBookEventDto.builder()
+                    .symbol("SYM" + symbol)
+                    .side(bid ? OrderBookEventDto.Side.BID : OrderBookEventDto.Side.ASK)
+                    .action(roll < 0.1 ? OrderBookEventDto.Action.DELETE : OrderBookEventDto.Action.MODIFY)
+                    .price(BigDecimal.valueOf(bid ? 10_000 - level : 10_000 + level, 2))
+                    .size(roll < 0.1 ? 0L : 100L + random.nextInt(1000))
+                    .sequence(++sequences[symbol] - EVENTS / SYMBOLS)
+                    .build();
+        }
+        return events;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
+import com.example.financialdatastreaming.dto.OrderBookSnapshotDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderBookEngineTest {
+
+    private MeterRegistry meterRegistry;
+    private OrderBookEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        SymbolRegistry symbolRegistry = new SymbolRegistry(meterRegistry, 100);
+        engine = new OrderBookEngine(new SimpMessagingTemplate((message, timeout) -> true),
+                new StockTopicDestinations(symbolRegistry), symbolRegistry, meterRegistry);
+        ReflectionTestUtils.setField(engine, "publishedDepth", 10);
+    }
+
+    @Test
+    void gapLeavesTheBookStaleUntilTheNextSnapshot() {
+        engine.apply(event(1, OrderBookEventDto.Side.BID, "99.00", 100));
+        engine.apply(event(2, OrderBookEventDto.Side.ASK, "101.00", 200));
+
+        engine.apply(event(5, OrderBookEventDto.Side.BID, "99.50", 300));
+        engine.apply(event(6, OrderBookEventDto.Side.ASK, "100.50", 300));
+
+        OrderBookSnapshotDto stale = engine.getSnapshot("AAPL");
+        assertThat(stale.isStale()).isTrue();
+        assertThat(stale.getBids()).isEmpty();
+        assertThat(stale.getAsks()).isEmpty();
+        assertThat(resyncs("gap")).isEqualTo(1);
+
+        engine.apply(snapshotEvent(6, List.of(level("99.50", 300), level("99.00", 100)), List.of(level("100.50", 300))));
+        engine.apply(event(7, OrderBookEventDto.Side.ASK, "101.00", 50));
+
+        OrderBookSnapshotDto rebuilt = engine.getSnapshot("AAPL");
+        assertThat(rebuilt.isStale()).isFalse();
+        assertThat(rebuilt.getBids()).extracting(OrderBookSnapshotDto.Level::getSize).containsExactly(300L, 100L);
+        assertThat(rebuilt.getAsks()).extracting(OrderBookSnapshotDto.Level::getSize).containsExactly(300L, 50L);
+        assertThat(rebuilt.getSequence()).isEqualTo(7);
+    }
+
+    // A node starting at the latest offset sees the stream mid-way and must not serve a partial book
+    @Test
+    void bookFirstSeenMidStreamWaitsForASnapshot() {
+        engine.apply(event(40, OrderBookEventDto.Side.BID, "99.00", 100));
+
+        assertThat(engine.getSnapshot("AAPL").isStale()).isTrue();
+
+        engine.apply(snapshotEvent(41, List.of(level("99.00", 100), level("98.00", 200)), List.of()));
+        engine.apply(event(42, OrderBookEventDto.Side.ASK, "101.00", 50));
+
+        OrderBookSnapshotDto snapshot = engine.getSnapshot("AAPL");
+        assertThat(snapshot.isStale()).isFalse();
+        assertThat(snapshot.getBids()).hasSize(2);
+        assertThat(snapshot.getAsks()).hasSize(1);
+        assertThat(resyncs("gap") + resyncs("regression")).isZero();
+    }
+
+    @Test
+    void snapshotNoNewerThanAConsistentBookIsIgnored() {
+        engine.apply(event(1, OrderBookEventDto.Side.BID, "99.00", 100));
+        engine.apply(event(2, OrderBookEventDto.Side.ASK, "101.00", 100));
+
+        engine.apply(snapshotEvent(2, List.of(level("98.00", 500)), List.of()));
+
+        OrderBookSnapshotDto snapshot = engine.getSnapshot("AAPL");
+        assertThat(snapshot.getBids()).extracting(OrderBookSnapshotDto.Level::getSize).containsExactly(100L);
+        assertThat(snapshot.getAsks()).hasSize(1);
+        assertThat(meterRegistry.get("stock.orderbook.snapshot.rebuilds").counter().count()).isZero();
+    }
+
+    @Test
+    void regressionClearsTheBook() {
+        engine.apply(event(1, OrderBookEventDto.Side.BID, "99.00", 100));
+        engine.apply(event(2, OrderBookEventDto.Side.BID, "98.00", 100));
+
+        engine.apply(event(1, OrderBookEventDto.Side.ASK, "101.00", 50));
+
+        OrderBookSnapshotDto snapshot = engine.getSnapshot("AAPL");
+        assertThat(snapshot.getBids()).isEmpty();
+        assertThat(snapshot.getAsks()).hasSize(1);
+        assertThat(resyncs("regression")).isEqualTo(1);
+    }
+
+    @Test
+    void contiguousEventsKeepEveryLevel() {
+        engine.apply(event(1, OrderBookEventDto.Side.BID, "99.00", 100));
+        engine.apply(event(2, OrderBookEventDto.Side.BID, "98.00", 100));
+        engine.apply(event(3, OrderBookEventDto.Side.ASK, "101.00", 100));
+
+        assertThat(engine.getSnapshot("AAPL").getBids()).hasSize(2);
+        assertThat(resyncs("gap") + resyncs("regression")).isZero();
+    }
+
+    private double resyncs(String reason) {
+        return meterRegistry.get("stock.orderbook.resyncs").tag("reason", reason).counter().count();
+    }
+
+    private static OrderBookEventDto snapshotEvent(long sequence, List<OrderBookSnapshotDto.Level> bids,
+                                                   List<OrderBookSnapshotDto.Level> asks) {
+        return OrderBookEventDto.builder()
+                .symbol("AAPL")
+                .action(OrderBookEventDto.Action.SNAPSHOT)
+                .bids(bids)
+                .asks(asks)
+                .sequence(sequence)
+                .build();
+    }
+
+    private static OrderBookSnapshotDto.Level level(String price, long size) {
+        return new OrderBookSnapshotDto.Level(new BigDecimal(price), size);
+    }
+
+    static OrderBookEventDto event(long sequence, OrderBookEventDto.Side side, String price, long size) {
+        return OrderBookEventDto.builder()
+                .symbol("AAPL")
+                .side(side)
+                .action(OrderBookEventDto.Action.MODIFY)
+                .price(new BigDecimal(price))
+                .size(size)
+                .sequence(sequence)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceHistoryCacheTest {
+
+    private static final long RAW_SPAN = 300;
+    private static final long CANDLE_SPAN = 21_600;
+
+    @Test
+    void lateTickEvictsOnlyTheSegmentsContainingIt() {
+        PriceHistoryCache cache = new PriceHistoryCache(new SimpleMeterRegistry(), 64L * 1024 * 1024);
+        for (long start = 0; start < CANDLE_SPAN * 2; start += RAW_SPAN) {
+            put(cache, key("AAPL", "raw", start), RAW_SPAN, new ArrayList<>());
+            put(cache, key("MSFT", "raw", start), RAW_SPAN, new ArrayList<>());
+        }
+        put(cache, key("AAPL", "PT5M", 0), CANDLE_SPAN, new ArrayList<>());
+        put(cache, key("AAPL", "PT5M", CANDLE_SPAN), CANDLE_SPAN, new ArrayList<>());
+        int before = cache.size();
+
+        cache.evictCovering("AAPL", 610);
+
+        assertThat(cache.size()).isEqualTo(before - 2);
+        assertThat(cache.contains(key("AAPL", "raw", 600))).isFalse();
+        assertThat(cache.contains(key("AAPL", "PT5M", 0))).isFalse();
+        assertThat(cache.contains(key("AAPL", "raw", 300))).isTrue();
+        assertThat(cache.contains(key("AAPL", "PT5M", CANDLE_SPAN))).isTrue();
+        assertThat(cache.contains(key("MSFT", "raw", 600))).isTrue();
+    }
+
+    @Test
+    void evictionKeepsTheByteAccountingInStep() {
+        PriceHistoryCache cache = new PriceHistoryCache(new SimpleMeterRegistry(), 64L * 1024 * 1024);
+        put(cache, key("AAPL", "raw", 0), RAW_SPAN, List.of(new StockPriceDto()));
+
+        cache.evictCovering("AAPL", 1);
+
+        assertThat(cache.getCurrentBytes()).isZero();
+    }
+
+    @Test
+    void loadStartedBeforeALateTickIsNotCached() {
+        PriceHistoryCache cache = new PriceHistoryCache(new SimpleMeterRegistry(), 64L * 1024 * 1024);
+        PriceHistoryCache.SegmentKey key = key("AAPL", "raw", 600);
+        long loadGeneration = cache.generation(key, RAW_SPAN);
+
+        cache.evictCovering("AAPL", 610);
+        PriceHistoryCache.Segment stale = cache.put(key, RAW_SPAN, List.of(new StockPriceDto()), loadGeneration);
+
+        assertThat(stale.getPrices()).hasSize(1);
+        assertThat(cache.contains(key)).isFalse();
+        assertThat(cache.getCurrentBytes()).isZero();
+
+        put(cache, key, RAW_SPAN, List.of(new StockPriceDto()));
+        assertThat(cache.contains(key)).isTrue();
+    }
+
+    @Test
+    void lateTickInAnotherSegmentLeavesALoadCacheable() {
+        PriceHistoryCache cache = new PriceHistoryCache(new SimpleMeterRegistry(), 64L * 1024 * 1024);
+        PriceHistoryCache.SegmentKey key = key("AAPL", "raw", 600);
+        long loadGeneration = cache.generation(key, RAW_SPAN);
+
+        cache.evictCovering("AAPL", 310);
+        cache.evictCovering("MSFT", 610);
+        cache.put(key, RAW_SPAN, new ArrayList<>(), loadGeneration);
+
+        assertThat(cache.contains(key)).isTrue();
+    }
+
+    // A load with nothing racing it
+    private static void put(PriceHistoryCache cache, PriceHistoryCache.SegmentKey key, long span,
+                            List<StockPriceDto> prices) {
+        cache.put(key, span, prices, cache.generation(key, span));
+    }
+
+    private static PriceHistoryCache.SegmentKey key(String symbol, String interval, long start) {
+        return new PriceHistoryCache.SegmentKey(symbol, interval, start);
+    }
+}
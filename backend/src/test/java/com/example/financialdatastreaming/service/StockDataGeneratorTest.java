@@ -0,0 +1,123 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.OrderBookEventDto;
+import com.example.financialdatastreaming.dto.OrderBookSnapshotDto;
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class StockDataGeneratorTest {
+
+    private KafkaTemplate<String, StockPriceDto> kafkaTemplate;
+    private KafkaTemplate<String, OrderBookEventDto> orderBookKafkaTemplate;
+    private StockDataGenerator generator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        orderBookKafkaTemplate = mock(KafkaTemplate.class);
+        generator = new StockDataGenerator(kafkaTemplate, orderBookKafkaTemplate,
+                new SymbolRegistry(new SimpleMeterRegistry(), 100));
+        ReflectionTestUtils.setField(generator, "symbols", List.of("AAPL"));
+        ReflectionTestUtils.setField(generator, "generatorEnabled", true);
+        ReflectionTestUtils.setField(generator, "stockPricesTopic", "stock-prices");
+        ReflectionTestUtils.setField(generator, "orderBookTopic", "order-book-events");
+        ReflectionTestUtils.setField(generator, "initialPrice", 100.0);
+        ReflectionTestUtils.setField(generator, "volatility", 0.002);
+        ReflectionTestUtils.setField(generator, "depthEventsPerTick", 5);
+        ReflectionTestUtils.setField(generator, "depthLevels", 20);
+        ReflectionTestUtils.setField(generator, "bookSnapshotIntervalMs", 1000L);
+        generator.registerSymbols();
+        generator.restoreLastPrices(Map.of("AAPL", StockPriceDto.builder()
+                .symbol("AAPL").price(new BigDecimal("100.00")).timestamp(Instant.now()).build()));
+    }
+
+    // A node that joins mid-stream holds a stale book until the next snapshot, then the same book as the generator
+    @Test
+    void nodeJoiningMidStreamRebuildsTheFullBookFromTheNextSnapshot() throws InterruptedException {
+        for (int round = 0; round < 10; round++) {
+            generator.generateDepthUpdates();
+        }
+        Thread.sleep(1_000);
+        generator.generateDepthUpdates();
+        generator.generateDepthUpdates();
+
+        ArgumentCaptor<OrderBookEventDto> sent = ArgumentCaptor.forClass(OrderBookEventDto.class);
+        verify(orderBookKafkaTemplate, atLeastOnce()).send(eq("order-book-events"), anyString(), sent.capture());
+        List<OrderBookEventDto> events = sent.getAllValues();
+        int firstSnapshot = indexOfSnapshot(events, 0);
+        int secondSnapshot = indexOfSnapshot(events, firstSnapshot + 1);
+        assertThat(secondSnapshot).as("a second snapshot after the interval").isPositive();
+
+        // Join after the first snapshot, partway through the incremental events
+        SymbolRegistry symbolRegistry = new SymbolRegistry(new SimpleMeterRegistry(), 100);
+        OrderBookEngine engine = new OrderBookEngine(new SimpMessagingTemplate((message, timeout) -> true),
+                new StockTopicDestinations(symbolRegistry), symbolRegistry, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "publishedDepth", 100);
+        events.subList(firstSnapshot + 3, secondSnapshot).forEach(engine::apply);
+        assertThat(engine.getSnapshot("AAPL").isStale()).isTrue();
+
+        events.subList(secondSnapshot, events.size()).forEach(engine::apply);
+
+        OrderBookSnapshotDto book = engine.getSnapshot("AAPL");
+        assertThat(book.isStale()).isFalse();
+        assertThat(book.getSequence()).isEqualTo(events.get(events.size() - 1).getSequence());
+        // Replaying the whole stream from the start gives the same book
+        OrderBookEngine complete = new OrderBookEngine(new SimpMessagingTemplate((message, timeout) -> true),
+                new StockTopicDestinations(symbolRegistry), symbolRegistry, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(complete, "publishedDepth", 100);
+        events.forEach(complete::apply);
+        assertThat(book.getBids()).isEqualTo(complete.getSnapshot("AAPL").getBids());
+        assertThat(book.getAsks()).isEqualTo(complete.getSnapshot("AAPL").getAsks());
+    }
+
+    @Test
+    void seedingIsOffUnlessDaysAreConfigured() {
+        ReflectionTestUtils.setField(generator, "generatorEnabled", false);
+        generator.seedHistoryOnStartup();
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(StockPriceDto.class));
+
+        // Seeding runs on its own, with live generation off
+        ReflectionTestUtils.setField(generator, "seedHistoryDays", 1);
+        generator.seedHistoryOnStartup();
+
+        ArgumentCaptor<StockPriceDto> sent = ArgumentCaptor.forClass(StockPriceDto.class);
+        verify(kafkaTemplate, times(8 * 60)).send(eq("stock-prices"), eq("AAPL"), sent.capture());
+        Instant seededBefore = Instant.now().minus(Duration.ofHours(12));
+        assertThat(sent.getAllValues()).allSatisfy(tick -> {
+            assertThat(tick.isHistorical()).isTrue();
+            assertThat(tick.getTimestamp()).isBefore(seededBefore);
+        });
+    }
+
+    private static int indexOfSnapshot(List<OrderBookEventDto> events, int from) {
+        for (int i = from; i < events.size(); i++) {
+            if (events.get(i).getAction() == OrderBookEventDto.Action.SNAPSHOT) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
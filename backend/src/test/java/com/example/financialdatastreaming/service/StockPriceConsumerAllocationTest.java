@@ -0,0 +1,281 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.config.QueryMetricsConfig;
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import com.example.financialdatastreaming.model.StockPrice;
+import com.example.financialdatastreaming.repository.QueryMetrics;
+import com.example.financialdatastreaming.repository.StockPriceRepository;
+import com.example.financialdatastreaming.repository.StockPriceRepositoryImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+import org.springframework.data.repository.query.QueryLookupStrategy;
+import org.springframework.data.repository.query.QueryMethod;
+import org.springframework.data.repository.query.QueryMethodEvaluationContextProvider;
+import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Heap allocated per consumed tick, end to end on the consumer thread: enrichment,
+ * the insert through the Spring Data repository proxy with the application's
+ * {@link QueryMetrics} timing and {@link JdbcTemplate}, sequencing, market state, the
+ * processed-topic send through a real {@link KafkaTemplate} (serialization included),
+ * STOMP payload conversion, SSE publish with no clients and rankings.
+ * <p>
+ * Left out, because they are not the pipeline's cost or are measured elsewhere: the JDBC
+ * driver and pool (a no-op DataSource stands in; its connection and statement do nothing),
+ * the producer's record accumulator and network I/O (a {@link MockProducer} completes each
+ * send, after serializing it), and the broker's subscription routing and outbound channel,
+ * which depend on the subscribers connected and run on the client outbound pool (the load
+ * tests measure those). Stand-ins on the measured path are hand-written rather than Mockito
+ * mocks, whose invocation recording would dominate the measurement.
+ */
+@Slf4j
+class StockPriceConsumerAllocationTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final int SYMBOLS = 200;
+    private static final int WARMUP_TICKS = 50_000;
+    private static final int MEASURED_TICKS = 50_000;
+
+    /*
+     * About 7.5 KB measured, nearly all of it inherent per tick: the two JSON encodings of
+     * the tick, for Kafka (2.5 KB with the record and its future) and for STOMP subscribers
+     * (3.2 KB with the message headers), the repository proxy invocation and JdbcTemplate
+     * statement callbacks (0.7 KB), and the in-memory path's BigDecimal change arithmetic
+     * and replaced ranking entries (0.5 KB).
+     */
+    private static final long BYTES_PER_TICK_BUDGET = 10_240;
+
+    @Test
+    void consumeStaysWithinItsAllocationBudget() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertThat(threads.isThreadAllocatedMemorySupported()).isTrue();
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MockProducer<String, StockPriceDto> producer = new MockProducer<>(true, new StringSerializer(),
+                new JsonSerializer<>(OBJECT_MAPPER));
+        StockPriceConsumer consumer = consumer(meterRegistry, producer);
+        StockPriceDto[] ticks = ticks(WARMUP_TICKS + MEASURED_TICKS);
+        long offset = 0;
+        for (int i = 0; i < WARMUP_TICKS; i++, offset++) {
+            consumer.consume(ticks[i], 0, offset);
+        }
+        producer.clear();
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = WARMUP_TICKS; i < ticks.length; i++, offset++) {
+            consumer.consume(ticks[i], 0, offset);
+        }
+        long bytesPerTick = (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_TICKS;
+
+        log.info("consume allocates {} bytes per tick across {} symbols", bytesPerTick, SYMBOLS);
+        // consume logs and swallows failures, so check every tick really took the full path
+        assertThat(meterRegistry.get("stock.db.query").tag("query", "StockPriceRepository.insertTick")
+                .tag("outcome", "success").timer().count()).isEqualTo(ticks.length);
+        assertThat(producer.history()).hasSize(MEASURED_TICKS);
+        assertThat(bytesPerTick).isLessThan(BYTES_PER_TICK_BUDGET);
+    }
+
+    private static StockPriceConsumer consumer(MeterRegistry meterRegistry, MockProducer<String, StockPriceDto> producer) {
+        SymbolRegistry symbolRegistry = new SymbolRegistry(meterRegistry, SYMBOLS);
+        MarketState marketState = new MarketState(symbolRegistry);
+        QueryMetrics queryMetrics = new QueryMetrics(meterRegistry);
+        ReflectionTestUtils.setField(queryMetrics, "slowQueryThresholdMs", 200L);
+        StockPriceRepository repository = repository(queryMetrics);
+        // Wrapped as the application's producer is, so the template's close after each send is ignored
+        KafkaTemplate<String, StockPriceDto> kafkaTemplate = new KafkaTemplate<>(
+                new DefaultKafkaProducerFactory<String, StockPriceDto>(Map.of()) {
+                    @Override
+                    protected Producer<String, StockPriceDto> createRawProducer(Map<String, Object> configs) {
+                        return producer;
+                    }
+                });
+        // Payloads are converted as the broker template does; the broker itself has no subscribers to route to
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> true);
+        MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+        messageConverter.setObjectMapper(OBJECT_MAPPER);
+        messagingTemplate.setMessageConverter(messageConverter);
+        WebSocketFanOutMetrics fanOutMetrics = new WebSocketFanOutMetrics(meterRegistry,
+                mock(SubProtocolWebSocketHandler.class));
+        PriceHistoryCache priceHistoryCache = new PriceHistoryCache(meterRegistry, 1 << 20);
+        StockPriceStreamService streamService = new StockPriceStreamService(OBJECT_MAPPER,
+                meterRegistry, fanOutMetrics, symbolRegistry, marketState, 1, 4096);
+        MarketRankingService rankingService = new MarketRankingService(messagingTemplate, symbolRegistry);
+        ReflectionTestUtils.setField(rankingService, "rankingsTopic", "/topic/rankings");
+        ReflectionTestUtils.setField(rankingService, "topN", 10);
+        StockPriceService stockPriceService = new StockPriceService(repository, priceHistoryCache, marketState,
+                fanOutMetrics, queryMetrics, symbolRegistry);
+        ReflectionTestUtils.invokeMethod(stockPriceService, "initCounters");
+
+        StockPriceConsumer consumer = new StockPriceConsumer(repository, kafkaTemplate, messagingTemplate,
+                fanOutMetrics, priceHistoryCache, streamService, rankingService, marketState,
+                new StockTopicDestinations(symbolRegistry), new TickReplayBuffer(symbolRegistry, marketState,
+                meterRegistry, 256), symbolRegistry, stockPriceService);
+        ReflectionTestUtils.setField(consumer, "stockPricesTopic", "stock-prices");
+        ReflectionTestUtils.setField(consumer, "processedStockPricesTopic", "processed-stock-prices");
+        ReflectionTestUtils.setField(consumer, "localFanOut", true);
+        ReflectionTestUtils.setField(consumer, "historyCloseGrace", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(consumer, "logSampleMask", 1023L);
+        return consumer;
+    }
+
+    /*
+     * The repository as the application builds it: a Spring Data proxy carrying the
+     * QueryMetrics post-processor, whose insertTick routes to the JDBC fragment over a
+     * DataSource wrapped for pool-wait tracking. Query methods find nothing (the latest-row
+     * lookup for a symbol seen for the first time) or refuse to run, since consume only
+     * reads that one.
+     */
+    @SuppressWarnings("unchecked")
+    private static StockPriceRepository repository(QueryMetrics queryMetrics) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("queryMetrics", queryMetrics);
+        BeanPostProcessor postProcessor = QueryMetricsConfig.queryMetricsPostProcessor(
+                beanFactory.getBeanProvider(QueryMetrics.class));
+        DataSource dataSource = (DataSource) postProcessor.postProcessAfterInitialization(noOpDataSource(), "dataSource");
+        RepositoryFactorySupport repositoryFactory = new RepositoryFactorySupport() {
+            @Override
+            public <T, ID> EntityInformation<T, ID> getEntityInformation(Class<T> domainClass) {
+                return mock(EntityInformation.class);
+            }
+
+            @Override
+            protected Object getTargetRepository(RepositoryInformation metadata) {
+                return mock(SimpleJpaRepository.class);
+            }
+
+            @Override
+            protected Class<?> getRepositoryBaseClass(RepositoryMetadata metadata) {
+                return SimpleJpaRepository.class;
+            }
+
+            @Override
+            protected Optional<QueryLookupStrategy> getQueryLookupStrategy(QueryLookupStrategy.Key key,
+                    QueryMethodEvaluationContextProvider evaluationContextProvider) {
+                return Optional.of((method, metadata, projectionFactory, namedQueries) -> new RepositoryQuery() {
+                    private final QueryMethod queryMethod = new QueryMethod(method, metadata, projectionFactory);
+
+                    @Override
+                    public Object execute(Object[] parameters) {
+                        if (method.getReturnType() == Optional.class) {
+                            return Optional.empty();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+
+                    @Override
+                    public QueryMethod getQueryMethod() {
+                        return queryMethod;
+                    }
+                });
+            }
+        };
+        RepositoryFactoryBeanSupport<StockPriceRepository, StockPrice, Long> factoryBean =
+                new RepositoryFactoryBeanSupport<>(StockPriceRepository.class) {
+                    @Override
+                    protected RepositoryFactorySupport createRepositoryFactory() {
+                        return repositoryFactory;
+                    }
+                };
+        factoryBean.setRepositoryFragments(RepositoryComposition.RepositoryFragments.just(
+                new StockPriceRepositoryImpl(new JdbcTemplate(dataSource))));
+        postProcessor.postProcessBeforeInitialization(factoryBean, "stockPriceRepository");
+        factoryBean.afterPropertiesSet();
+        return factoryBean.getObject();
+    }
+
+    // A connection whose statements accept every parameter and report one row inserted
+    private static DataSource noOpDataSource() {
+        PreparedStatement statement = noOp(PreparedStatement.class, Map.of("executeUpdate", 1));
+        Connection connection = noOp(Connection.class, Map.of("prepareStatement", statement));
+        return noOp(DataSource.class, Map.of("getConnection", connection));
+    }
+
+    private static <T> T noOp(Class<T> type, Map<String, Object> results) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = results.get(method.getName());
+                    if (result != null) {
+                        return result;
+                    }
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == boolean.class) {
+                        return false;
+                    }
+                    if (returnType == int.class) {
+                        return 0;
+                    }
+                    return returnType == long.class ? 0L : null;
+                }));
+    }
+
+    // Built up front so the ticks themselves, which arrive from Kafka, are not charged to consume
+    private static StockPriceDto[] ticks(int count) {
+        Random random = new Random(42);
+        String[] symbols = new String[SYMBOLS];
+        double[] prices = new double[SYMBOLS];
+        long[] volumes = new long[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbols[i] = "S" + i;
+            prices[i] = 100.0;
+            volumes[i] = 100_000L + random.nextInt(900_000);
+        }
+        Instant now = Instant.now();
+        StockPriceDto[] ticks = new StockPriceDto[count];
+        for (int i = 0; i < count; i++) {
+            int symbol = random.nextInt(SYMBOLS);
+            prices[symbol] = Math.max(1.0, prices[symbol] * (1 + random.nextGaussian() * 0.001));
+            double price = Math.round(prices[symbol] * 100) / 100.0;
+            // Same random walk as StockDataGenerator
+            volumes[symbol] = Math.max(1000, volumes[symbol] + random.nextInt(10_000) - 5_000);
+            ticks[i] = StockPriceDto.builder()
+                    .symbol(symbols[symbol])
+                    .price(BigDecimal.valueOf(price))
+                    .open(BigDecimal.valueOf(100.0))
+                    .high(BigDecimal.valueOf(Math.max(price, 100.0)))
+                    .low(BigDecimal.valueOf(Math.min(price, 100.0)))
+                    .volume(volumes[symbol])
+                    .timestamp(now)
+                    .build();
+        }
+        return ticks;
+    }
+}
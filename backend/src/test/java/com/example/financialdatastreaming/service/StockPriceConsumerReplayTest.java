@@ -0,0 +1,172 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import com.example.financialdatastreaming.repository.StockPriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class StockPriceConsumerReplayTest {
+
+    private static final String TOPIC = "stock-prices";
+
+    private StockPriceRepository repository;
+    private KafkaTemplate<String, StockPriceDto> kafkaTemplate;
+    private MarketRankingService rankingService;
+    private MarketState marketState;
+    private StockPriceConsumer consumer;
+    private ConsumerSeekCallback seekCallback;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(StockPriceRepository.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        rankingService = mock(MarketRankingService.class);
+        SymbolRegistry symbolRegistry = new SymbolRegistry(new SimpleMeterRegistry(), 100);
+        marketState = new MarketState(symbolRegistry);
+        seekCallback = mock(ConsumerSeekCallback.class);
+        consumer = new StockPriceConsumer(repository, kafkaTemplate, mock(SimpMessagingTemplate.class),
+                mock(WebSocketFanOutMetrics.class), mock(PriceHistoryCache.class),
+                mock(StockPriceStreamService.class), rankingService, marketState,
+                mock(StockTopicDestinations.class), mock(TickReplayBuffer.class),
+                symbolRegistry, mock(StockPriceService.class));
+        ReflectionTestUtils.setField(consumer, "stockPricesTopic", TOPIC);
+        ReflectionTestUtils.setField(consumer, "processedStockPricesTopic", "processed-stock-prices");
+        ReflectionTestUtils.setField(consumer, "localFanOut", true);
+        ReflectionTestUtils.setField(consumer, "historyCloseGrace", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(consumer, "logSampleMask", 1023L);
+        ReflectionTestUtils.setField(consumer, "maxReplayRecords", 1000L);
+    }
+
+    @Test
+    void snapshotBehindTheCommitReplaysTheGapIntoMemoryOnly() {
+        marketState.restoreOffset(0, 9);
+        marketState.update(tick(9, 100.0));
+
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 20L), seekCallback);
+        verify(seekCallback).seek(TOPIC, 0, 10);
+
+        for (long offset = 10; offset < 20; offset++) {
+            consumer.consume(tick(offset, 100.0 + offset), 0, offset);
+        }
+
+        verify(repository, never()).insertTick(any());
+        verifyNoInteractions(kafkaTemplate);
+        verify(rankingService, times(10)).update(any());
+        assertThat(marketState.getAppliedOffset(0)).isEqualTo(19);
+        StockPriceDto latest = marketState.getLatest("AAPL");
+        assertThat(latest.getPrice()).isEqualByComparingTo("119.0");
+        assertThat(latest.getChangeAmount()).isEqualByComparingTo("1.0");
+
+        // The first record past the commit is new and goes through the normal path
+        consumer.consume(tick(20, 120.0), 0, 20);
+        verify(repository).insertTick(any());
+        verify(kafkaTemplate).send(anyString(), anyString(), any());
+    }
+
+    @Test
+    void replayedTicksOlderThanTheRestoredStateLeaveItAndTheRankingsAlone() {
+        marketState.restoreOffset(0, 9);
+        StockPriceDto restored = tick(30, 130.0);
+        restored.setChangeAmount(BigDecimal.ONE);
+        marketState.update(restored);
+
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 20L), seekCallback);
+        StockPriceDto replayed = tick(15, 115.0);
+        consumer.consume(replayed, 0, 15);
+
+        assertThat(replayed.getChangeAmount()).isNull();
+        verify(rankingService, never()).update(any());
+        assertThat(marketState.getLatest("AAPL")).isSameAs(restored);
+        assertThat(marketState.getAppliedOffset(0)).isEqualTo(15);
+    }
+
+    @Test
+    void snapshotAheadOfTheCommitSkipsWhatItAlreadyApplied() {
+        marketState.restoreOffset(0, 29);
+
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 20L), seekCallback);
+        consumer.consume(tick(30, 130.0), 0, 30);
+
+        verify(seekCallback).seek(TOPIC, 0, 30);
+        verify(repository).insertTick(any());
+    }
+
+    @Test
+    void snapshotMatchingTheCommitNeedsNoSeek() {
+        marketState.restoreOffset(0, 19);
+
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 20L), seekCallback);
+
+        verifyNoInteractions(seekCallback);
+    }
+
+    @Test
+    void onlyTheFirstAssignmentAfterARestoreIsReconciled() {
+        marketState.restoreOffset(0, 19);
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 20L), seekCallback);
+        consumer.consume(tick(20, 120.0), 0, 20);
+
+        // Another node advanced the partition meanwhile; the offset applied here is not a reason to rewind
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 500L), seekCallback);
+
+        verifyNoInteractions(seekCallback);
+    }
+
+    @Test
+    void revokedPartitionsForgetTheirAppliedOffset() {
+        marketState.restoreOffset(0, 9);
+        consumer.onPartitionsRevoked(List.of(new TopicPartition(TOPIC, 0)));
+
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 20L), seekCallback);
+        consumer.consume(tick(20, 120.0), 0, 20);
+
+        verifyNoInteractions(seekCallback);
+        verify(repository).insertTick(any());
+        assertThat(marketState.getAppliedOffsets()).containsOnly(Map.entry(0, 20L));
+    }
+
+    @Test
+    void snapshotTooFarBehindContinuesFromTheCommit() {
+        marketState.restoreOffset(0, 9);
+
+        consumer.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 5_000L), seekCallback);
+        consumer.consume(tick(5_000, 150.0), 0, 5_000);
+
+        verifyNoInteractions(seekCallback);
+        verify(repository).insertTick(any());
+    }
+
+    private static StockPriceDto tick(long second, double price) {
+        return StockPriceDto.builder()
+                .symbol("AAPL")
+                .price(BigDecimal.valueOf(price))
+                .open(BigDecimal.valueOf(100.0))
+                .high(BigDecimal.valueOf(price))
+                .low(BigDecimal.valueOf(100.0))
+                .volume(1000L)
+                .timestamp(Instant.ofEpochSecond(1_700_000_000L + second))
+                .build();
+    }
+}
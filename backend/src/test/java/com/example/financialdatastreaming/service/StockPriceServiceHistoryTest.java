@@ -0,0 +1,219 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.PriceHistoryResult;
+import com.example.financialdatastreaming.model.StockPrice;
+import com.example.financialdatastreaming.repository.QueryMetrics;
+import com.example.financialdatastreaming.repository.StockPriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * History reads against a stubbed repository that synthesizes one tick every 10 seconds
+ * and one 5-minute candle per bucket, so database queries and rows read can be counted.
+ */
+@Slf4j
+class StockPriceServiceHistoryTest {
+
+    private static final long TICK_SECONDS = 10;
+    private static final int DASHBOARDS = 20;
+    private static final int POLLS = 5;
+    private static final List<String> SYMBOLS = List.of("AAPL", "MSFT", "AMZN", "GOOGL", "TSLA");
+
+    private StockPriceRepository repository;
+    private PriceHistoryCache cache;
+    private StockPriceService service;
+    private long cachedQueries;
+    private long cachedRows;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(StockPriceRepository.class);
+        when(repository.findBySymbolAndTimestampBetweenOrderByTimestampAsc(anyString(), any(), any()))
+                .thenAnswer(invocation -> counted(ticks(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.getArgument(2))));
+        when(repository.findCandles(anyString(), any(), any(), any()))
+                .thenAnswer(invocation -> counted(candles(invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(3))));
+
+        SymbolRegistry symbolRegistry = new SymbolRegistry(new SimpleMeterRegistry(), 1000);
+        cache = new PriceHistoryCache(new SimpleMeterRegistry(), 256L * 1024 * 1024);
+        service = new StockPriceService(repository, cache,
+                new MarketState(symbolRegistry), mock(WebSocketFanOutMetrics.class), mock(QueryMetrics.class),
+                symbolRegistry);
+        ReflectionTestUtils.setField(service, "rawSegmentSpan", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "historyCloseGrace", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "rawFillSpan", Duration.ofDays(1));
+        ReflectionTestUtils.setField(service, "defaultSymbols", SYMBOLS);
+    }
+
+    @Test
+    void invalidIntervalsAreRejectedAsBadArguments() {
+        Instant now = Instant.now();
+        Instant hourAgo = now.minus(Duration.ofHours(1));
+
+        for (String interval : List.of("0m", "-5m", "5x", "m", "abc", "1.5h")) {
+            assertThatThrownBy(() -> service.getPriceHistory("AAPL", hourAgo, now, interval, 100))
+                    .as(interval)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    // StockDetail asks for 1w candles over a year
+    @Test
+    void weeklyCandlesAreReadFromTheDailyAggregate() {
+        StockPriceRepository routing = mock(StockPriceRepository.class, CALLS_REAL_METHODS);
+        SymbolRegistry symbolRegistry = new SymbolRegistry(new SimpleMeterRegistry(), 1000);
+        StockPriceService weekly = new StockPriceService(routing, cache, new MarketState(symbolRegistry),
+                mock(WebSocketFanOutMetrics.class), mock(QueryMetrics.class), symbolRegistry);
+        Instant now = Instant.now();
+        Instant yearAgo = now.minus(Duration.ofDays(365));
+
+        assertThatCode(() -> weekly.getPriceHistory("AAPL", yearAgo, now, "1w", 500)).doesNotThrowAnyException();
+
+        verify(routing).findDailyCandles(eq("AAPL"), eq(Duration.ofDays(7).toString()), any(), any());
+    }
+
+    // 1d candles sit in 84-day segments: the closed part of a cold quarter is one query, the open segment another
+    @Test
+    void coldDailyRangeCostsOneQueryPlusTheOpenSegment() {
+        Instant now = Instant.now();
+        Instant quarterAgo = now.minus(Duration.ofDays(90));
+
+        PriceHistoryResult cold = service.getPriceHistory("AAPL", quarterAgo, now, "1d", null);
+        long coldQueries = cachedQueries;
+        PriceHistoryResult warm = service.getPriceHistory("AAPL", quarterAgo, now, "1d", null);
+
+        assertThat(cold.getPrices()).hasSizeGreaterThanOrEqualTo(90);
+        assertThat(warm.getPrices()).hasSameSizeAs(cold.getPrices());
+        assertThat(coldQueries).isEqualTo(2);
+        assertThat(cachedQueries - coldQueries).isEqualTo(1);
+    }
+
+    // Raw ticks are filled a day per query rather than a handful of 5-minute segments per query
+    @Test
+    void coldRawWeekCostsOneQueryPerDay() {
+        Instant end = closedRawEnd();
+        Instant weekAgo = end.minus(Duration.ofDays(7));
+
+        service.getPriceHistory("AAPL", weekAgo, end, null, null);
+        long coldQueries = cachedQueries;
+        service.getPriceHistory("AAPL", weekAgo, end, null, null);
+
+        assertThat(coldQueries).isLessThanOrEqualTo(8);
+        assertThat(cachedQueries).isEqualTo(coldQueries);
+    }
+
+    // A late tick written while a closed segment is being read must not leave the old read cached
+    @Test
+    void segmentInvalidatedWhileLoadingIsReadAgainNextTime() {
+        Instant end = closedRawEnd();
+        Instant hourAgo = end.minus(Duration.ofHours(1));
+        Instant late = hourAgo.plus(Duration.ofMinutes(30));
+        doAnswer(invocation -> {
+            Instant from = invocation.getArgument(1);
+            Instant to = invocation.getArgument(2);
+            List<StockPrice> rows = counted(ticks(invocation.getArgument(0), from, to));
+            if (!late.isBefore(from) && !late.isAfter(to)) {
+                // The consumer stores a late tick and evicts its segment while this query runs
+                cache.evictCovering("AAPL", late.getEpochSecond());
+            }
+            return rows;
+        }).when(repository).findBySymbolAndTimestampBetweenOrderByTimestampAsc(anyString(), any(), any());
+
+        service.getPriceHistory("AAPL", hourAgo, end, null, null);
+        long firstQueries = cachedQueries;
+        service.getPriceHistory("AAPL", hourAgo, end, null, null);
+
+        // Only the invalidated segment is read again
+        assertThat(cachedQueries - firstQueries).isEqualTo(1);
+    }
+
+    /*
+     * Dashboards polling the last 24h, as StockPriceChart (raw, limit 500) and StockDetail
+     * (5m candles) do. The uncached baseline is one query per request reading the whole
+     * range, which is what the service did before segment caching.
+     */
+    @Test
+    void dashboardPollingReadsFarFewerRowsThanTheUncachedBaseline() {
+        long baselineQueries = 0;
+        long baselineRows = 0;
+        Instant now = Instant.now();
+        Instant dayAgo = now.minus(Duration.ofDays(1));
+
+        for (int poll = 0; poll < POLLS; poll++) {
+            for (int dashboard = 0; dashboard < DASHBOARDS; dashboard++) {
+                for (String symbol : SYMBOLS) {
+                    PriceHistoryResult raw = service.getPriceHistory(symbol, dayAgo, now, 500);
+                    PriceHistoryResult candles = service.getPriceHistory(symbol, dayAgo, now, "5m", 500);
+                    assertThat(raw.getPrices()).hasSize(500);
+                    assertThat(candles.getPrices()).isNotEmpty();
+
+                    baselineQueries += 2;
+                    baselineRows += ticks(symbol, dayAgo, now).size() + candles(Duration.ofMinutes(5), dayAgo, now).size();
+                }
+            }
+        }
+
+        long requests = (long) POLLS * DASHBOARDS * SYMBOLS.size() * 2;
+        log.info("Dashboard history: {} requests, uncached {} queries / {} rows, segment cache {} queries / {} rows",
+                requests, baselineQueries, baselineRows, cachedQueries, cachedRows);
+        assertThat(cachedRows).isLessThan(baselineRows / 20);
+        assertThat(cachedQueries).isLessThan(baselineQueries);
+    }
+
+    // A range end a minute before the current 5-minute raw segment, so every segment up to it stays closed
+    private static Instant closedRawEnd() {
+        long segment = Duration.ofMinutes(5).getSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(Instant.now().getEpochSecond(), segment) * segment - 60);
+    }
+
+    private <T> List<T> counted(List<T> rows) {
+        cachedQueries++;
+        cachedRows += rows.size();
+        return rows;
+    }
+
+    private static List<StockPrice> ticks(String symbol, Instant from, Instant to) {
+        List<StockPrice> ticks = new ArrayList<>();
+        long first = Math.floorDiv(from.getEpochSecond() + TICK_SECONDS - 1, TICK_SECONDS) * TICK_SECONDS;
+        for (long second = first; second <= to.getEpochSecond(); second += TICK_SECONDS) {
+            BigDecimal price = BigDecimal.valueOf(100 + second % 7);
+            ticks.add(StockPrice.builder().symbol(symbol).price(price).open(price).high(price).low(price)
+                    .close(price).volume(1000L).timestamp(Instant.ofEpochSecond(second)).build());
+        }
+        return ticks;
+    }
+
+    private static List<Object[]> candles(Duration bucket, Instant from, Instant to) {
+        List<Object[]> candles = new ArrayList<>();
+        long width = bucket.getSeconds();
+        long first = Math.floorDiv(from.getEpochSecond() + width - 1, width) * width;
+        for (long second = first; second <= to.getEpochSecond(); second += width) {
+            BigDecimal price = BigDecimal.valueOf(100 + second % 7);
+            candles.add(new Object[]{Timestamp.from(Instant.ofEpochSecond(second)), price, price, price, price, 1000L});
+        }
+        return candles;
+    }
+}
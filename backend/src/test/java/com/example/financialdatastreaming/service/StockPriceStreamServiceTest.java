@@ -0,0 +1,270 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the stream service behind a real embedded Tomcat, since non-blocking writes and
+ * slow-client detection depend on the container's I/O.
+ */
+class StockPriceStreamServiceTest {
+
+    private SymbolRegistry symbolRegistry;
+    private MarketState marketState;
+    private MeterRegistry meterRegistry;
+    private StockPriceStreamService streamService;
+    private Tomcat tomcat;
+    private int port;
+    private long createdAtMicros;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        symbolRegistry = new SymbolRegistry(meterRegistry, 100);
+        marketState = new MarketState(symbolRegistry);
+        createdAtMicros = System.currentTimeMillis() * 1000;
+        streamService = new StockPriceStreamService(new ObjectMapper().findAndRegisterModules(), meterRegistry,
+                mock(WebSocketFanOutMetrics.class), symbolRegistry, marketState, 2, 1024);
+        ReflectionTestUtils.setField(streamService, "bufferSize", 256);
+        ReflectionTestUtils.setField(streamService, "heartbeatIntervalMs", 15_000L);
+        ReflectionTestUtils.setField(streamService, "writeTimeoutMs", 300L);
+        for (String symbol : List.of("AAPL", "MSFT")) {
+            StockPriceDto tick = MarketRankingServiceTest.tick(symbol, 100.0, 101.0);
+            marketState.update(tick);
+        }
+
+        tomcat = new Tomcat();
+        tomcat.setPort(0);
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        Context context = tomcat.addContext("", null);
+        Wrapper wrapper = Tomcat.addServlet(context, "stream", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                String lastEventId = request.getHeader("Last-Event-ID");
+                streamService.subscribe(request, response, List.of(request.getParameter("symbols").split(",")),
+                        lastEventId != null ? Long.valueOf(lastEventId) : null);
+            }
+        });
+        wrapper.setAsyncSupported(true);
+        context.addServletMappingDecoded("/stream", "stream");
+        tomcat.getConnector();
+        tomcat.start();
+        port = tomcat.getConnector().getLocalPort();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        streamService.shutdown();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Test
+    void eventIdsStartFromTheWallClock() throws Exception {
+        Iterator<String> lines = open("AAPL", null);
+        awaitConnections(1);
+
+        streamService.publish(tick("AAPL"));
+
+        assertThat(Long.parseLong(nextValue(lines, "id: "))).isGreaterThan(createdAtMicros);
+    }
+
+    @Test
+    void resumeReplaysOnlyTheSubscribedSymbols() throws Exception {
+        Iterator<String> first = open("AAPL", null);
+        awaitConnections(1);
+        streamService.publish(tick("AAPL"));
+        long lastSeen = Long.parseLong(nextValue(first, "id: "));
+
+        streamService.publish(tick("MSFT"));
+        streamService.publish(tick("AAPL"));
+        Iterator<String> resumed = open("AAPL", lastSeen);
+
+        assertThat(Long.parseLong(nextValue(resumed, "id: "))).isEqualTo(lastSeen + 2);
+        assertThat(nextValue(resumed, "event: ")).isEqualTo("price");
+    }
+
+    @Test
+    void resumeWhilePublishingDeliversEveryTickOnceAndInOrder() throws Exception {
+        Iterator<String> first = open("AAPL", null);
+        awaitConnections(1);
+        streamService.publish(tick("AAPL"));
+        long lastSeen = Long.parseLong(nextValue(first, "id: "));
+
+        AtomicBoolean publishing = new AtomicBoolean(true);
+        Thread publisher = new Thread(() -> {
+            while (publishing.get()) {
+                streamService.publish(tick("AAPL"));
+                LockSupport.parkNanos(1_000_000); // Slow enough that a resume's backlog fits the buffer
+            }
+        });
+        publisher.start();
+        try {
+            // Each resume races the publisher: replayed ticks, then live ones, with no gap or repeat between
+            for (int resume = 0; resume < 20; resume++) {
+                Iterator<String> resumed = open("AAPL", lastSeen);
+                for (int i = 0; i < 50; i++) {
+                    assertThat(Long.parseLong(nextValue(resumed, "id: "))).as("resume %d, tick %d", resume, i)
+                            .isEqualTo(lastSeen + 1 + i);
+                }
+                lastSeen += 50;
+            }
+        } finally {
+            publishing.set(false);
+            publisher.join();
+        }
+        assertThat(meterRegistry.get("stock.sse.resets").counter().count()).isZero();
+    }
+
+    @Test
+    void unservableLastEventIdGetsResetAndSnapshot() throws Exception {
+        // An id from before a restart is lower than anything this process issued
+        Iterator<String> lines = open("AAPL,MSFT", 42L);
+
+        assertThat(nextValue(lines, "event: ")).isEqualTo("reset");
+        assertThat(nextValue(lines, "event: ")).isEqualTo("price");
+        assertThat(nextValue(lines, "event: ")).isEqualTo("price");
+        assertThat(meterRegistry.get("stock.sse.resets").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void unknownSymbolsAreNotRegisteredAndEmptySubscriptionsAreReleased() throws Exception {
+        try (Socket socket = rawSubscribe("AAPL,NOPE1,NOPE2")) {
+            awaitConnections(1);
+            assertThat(symbolRegistry.find("NOPE1")).isNegative();
+        }
+        // The server notices the closed socket on the next write
+        eventually(() -> {
+            streamService.publish(tick("AAPL"));
+            assertThat(streamService.getConnectionCount()).isZero();
+        });
+        @SuppressWarnings("unchecked")
+        var slots = (java.util.concurrent.atomic.AtomicReferenceArray<Object>)
+                ReflectionTestUtils.getField(streamService, "connectionsBySymbol");
+        assertThat(slots.get(symbolRegistry.find("AAPL"))).isNull();
+    }
+
+    @Test
+    void clientThatStopsReadingIsDroppedWithoutHoldingUpOthers() throws Exception {
+        Iterator<String> fast = open("AAPL", null);
+        try (Socket slow = rawSubscribe("AAPL")) {
+            awaitConnections(2);
+
+            // Far more than the socket buffers hold; publishing must not wait for the slow reader
+            long start = System.nanoTime();
+            for (int i = 0; i < 50_000; i++) {
+                streamService.publish(tick("AAPL"));
+            }
+            long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            streamService.publish(tick("AAPL"));
+
+            String id;
+            do {
+                id = nextValue(fast, "id: ");
+            } while (!id.equals(Long.toString(eventIds())));
+            eventually(() -> {
+                streamService.closeStalledConnections();
+                assertThat(streamService.getConnectionCount()).isEqualTo(1);
+            });
+            assertThat(publishMillis).isLessThan(5_000);
+            assertThat(meterRegistry.get("stock.sse.disconnects").counter().count()).isEqualTo(1);
+        }
+    }
+
+    private long eventIds() {
+        return ((java.util.concurrent.atomic.AtomicLong) ReflectionTestUtils.getField(streamService, "eventIds")).get();
+    }
+
+    private Iterator<String> open(String symbols, Long lastEventId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/stream?symbols=" + symbols));
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", Long.toString(lastEventId));
+        }
+        HttpResponse<Stream<String>> response = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+                .send(request.build(), HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                type -> assertThat(type).startsWith("text/event-stream"));
+        return response.body().iterator();
+    }
+
+    // A client with a tiny receive window that never reads
+    private Socket rawSubscribe(String symbols) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(1024);
+        socket.connect(new java.net.InetSocketAddress("localhost", port));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /stream?symbols=" + symbols + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        InputStream in = socket.getInputStream();
+        in.read(new byte[64]); // Status line, so the subscription is known to be registered
+        return socket;
+    }
+
+    private void awaitConnections(int count) throws InterruptedException {
+        eventually(() -> assertThat(streamService.getConnectionCount()).isEqualTo(count));
+    }
+
+    // Retries the assertion for up to five seconds
+    private static void eventually(Runnable assertion) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                assertion.run();
+                return;
+            } catch (AssertionError e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static String nextValue(Iterator<String> lines, String prefix) {
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.startsWith(prefix)) {
+                return line.substring(prefix.length());
+            }
+        }
+        throw new AssertionError("Stream ended before a '" + prefix + "' line");
+    }
+
+    private static StockPriceDto tick(String symbol) {
+        return MarketRankingServiceTest.tick(symbol, 100.0, 101.0);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-tick state lookup at 100k symbols: a String-keyed ConcurrentHashMap, as the
+ * services used before, against the id-indexed MarketState. Also compares the heap
+ * each structure retains beyond the ticks themselves; the registry is paid once and
+ * shared by every id-indexed structure, so it is reported on its own.
+ */
+@Tag("benchmark")
+@Slf4j
+class SymbolRegistryBenchmarkTest {
+
+    private static final int SYMBOLS = 100_000;
+    private static final int LOOKUPS = 20_000_000;
+
+    @Test
+    void idIndexedLookupIsCheaperAndSmallerThanAStringKeyedMap() {
+        SymbolRegistry registry = new SymbolRegistry(new SimpleMeterRegistry(), SYMBOLS);
+        StockPriceDto[] ticks = new StockPriceDto[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            // Fresh strings, as Kafka deserialization produces, so the map cannot short-circuit on identity
+            ticks[i] = MarketRankingServiceTest.tick(new String(("SYM" + i).toCharArray()), 100.0, 101.0);
+        }
+
+        long baseline = usedHeap();
+        for (StockPriceDto tick : ticks) {
+            registry.idOf(tick);
+        }
+        long registryBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        Map<String, StockPriceDto> byName = new ConcurrentHashMap<>();
+        for (StockPriceDto tick : ticks) {
+            byName.put(tick.getSymbol(), tick);
+        }
+        long mapBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        MarketState byId = new MarketState(registry);
+        for (StockPriceDto tick : ticks) {
+            byId.update(tick);
+        }
+        long arrayBytes = usedHeap() - baseline;
+
+        for (int round = 0; round < 3; round++) {
+            lookUpByName(byName, ticks);
+            lookUpById(byId, registry, ticks);
+        }
+        long start = System.nanoTime();
+        long nameHits = lookUpByName(byName, ticks);
+        double nameNanos = (System.nanoTime() - start) / (double) LOOKUPS;
+        start = System.nanoTime();
+        long idHits = lookUpById(byId, registry, ticks);
+        double idNanos = (System.nanoTime() - start) / (double) LOOKUPS;
+
+        log.info("{} symbols: String map {} ns/lookup, ~{} KB; id array {} ns/lookup, ~{} KB; registry ~{} KB once",
+                SYMBOLS, String.format("%.1f", nameNanos), mapBytes / 1024, String.format("%.1f", idNanos),
+                arrayBytes / 1024, registryBytes / 1024);
+        assertThat(nameHits).isEqualTo(LOOKUPS);
+        assertThat(idHits).isEqualTo(LOOKUPS);
+        assertThat(idNanos).isLessThan(nameNanos);
+        assertThat(arrayBytes).isLessThan(mapBytes);
+    }
+
+    private static long lookUpByName(Map<String, StockPriceDto> byName, StockPriceDto[] ticks) {
+        long hits = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            StockPriceDto tick = ticks[(int) ((i * 7919L) % SYMBOLS)];
+            if (byName.get(tick.getSymbol()) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    // The id is cached on the tick by the registry, as the consumer does on arrival
+    private static long lookUpById(MarketState byId, SymbolRegistry registry, StockPriceDto[] ticks) {
+        long hits = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            StockPriceDto tick = ticks[(int) ((i * 7919L) % SYMBOLS)];
+            if (byId.getLatest(registry.idOf(tick)) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.ResumeResponseDto;
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TickReplayBufferTest {
+
+    private TickReplayBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SymbolRegistry symbolRegistry = new SymbolRegistry(meterRegistry, 100);
+        buffer = new TickReplayBuffer(symbolRegistry, new MarketState(symbolRegistry), meterRegistry, 16);
+    }
+
+    @Test
+    void firstStampIsSeededFromTheWallClock() {
+        long before = System.currentTimeMillis() * 1000;
+        StockPriceDto first = stamp();
+        StockPriceDto second = stamp();
+
+        assertThat(first.getSequence()).isGreaterThanOrEqualTo(before);
+        assertThat(second.getSequence()).isEqualTo(first.getSequence() + 1);
+    }
+
+    @Test
+    void takingOverFromAnotherNodeNeverReusesItsSequences() {
+        // Another node sequenced this symbol with a clock running ahead of ours
+        long foreign = (System.currentTimeMillis() + 60_000) * 1000;
+        for (int i = 0; i < 5; i++) {
+            buffer.append(tick(foreign + i));
+        }
+
+        StockPriceDto taken = stamp();
+
+        assertThat(taken.getSequence()).isGreaterThan(foreign + 4);
+    }
+
+    @Test
+    void regainingASymbolAfterForeignTicksReseeds() {
+        StockPriceDto own = stamp();
+        buffer.append(own); // Our own tick coming back from the processed topic is ignored
+        buffer.append(tick(own.getSequence() + 1));
+        buffer.append(tick(own.getSequence() + 2));
+
+        StockPriceDto regained = stamp();
+
+        assertThat(regained.getSequence()).isGreaterThan(own.getSequence() + 2);
+    }
+
+    @Test
+    void jumpInSequenceDoesNotReplayStaleSlots() {
+        long foreign = System.currentTimeMillis() * 1000 - 1_000_000;
+        for (int i = 0; i < 8; i++) {
+            buffer.append(tick(foreign + i));
+        }
+        StockPriceDto taken = stamp();
+        stamp();
+
+        ResumeResponseDto resume = buffer.resume("AAPL", taken.getSequence() - 1);
+        ResumeResponseDto staleResume = buffer.resume("AAPL", foreign + 3);
+
+        assertThat(resume.isSnapshot()).isFalse();
+        assertThat(resume.getTicks()).hasSize(2);
+        assertThat(staleResume.isSnapshot()).isTrue();
+    }
+
+    private StockPriceDto stamp() {
+        StockPriceDto tick = tick(null);
+        buffer.stamp(tick);
+        return tick;
+    }
+
+    private static StockPriceDto tick(Long sequence) {
+        StockPriceDto tick = MarketRankingServiceTest.tick("AAPL", 100.0, 101.0);
+        tick.setSequence(sequence);
+        return tick;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.financialdatastreaming.service;
+
+import com.example.financialdatastreaming.dto.StockPriceDto;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class WebSocketFanOutMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebSocketFanOutMetrics fanOutMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        fanOutMetrics = new WebSocketFanOutMetrics(meterRegistry, mock(SubProtocolWebSocketHandler.class));
+    }
+
+    @Test
+    void aLiveBacklogIsMeasuredHoweverOldItIs() {
+        fanOutMetrics.recordDelivery(tick(Instant.now().minus(Duration.ofMinutes(5)), false));
+
+        Timer stomp = meterRegistry.get("stock.pipeline.latency").tag("transport", "stomp").timer();
+        assertThat(stomp.count()).isEqualTo(1);
+        assertThat(stomp.max(TimeUnit.MINUTES)).isGreaterThanOrEqualTo(4.9);
+    }
+
+    @Test
+    void seededHistoryIsDeliveredButNotMeasured() {
+        fanOutMetrics.recordDelivery(tick(Instant.now().minus(Duration.ofDays(3)), true));
+
+        assertThat(meterRegistry.get("stock.websocket.delivered").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("stock.pipeline.latency").tag("transport", "stomp").timer().count()).isZero();
+    }
+
+    private static StockPriceDto tick(Instant timestamp, boolean historical) {
+        return StockPriceDto.builder()
+                .symbol("AAPL")
+                .price(BigDecimal.valueOf(100.0))
+                .timestamp(timestamp)
+                .historical(historical)
+                .build();
+    }
+}
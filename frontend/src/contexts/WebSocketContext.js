@@ -1,9 +1,13 @@
-import React, { createContext, useContext, useState, useEffect, useCallback } from 'react';
+import React, { createContext, useContext, useState, useEffect, useCallback, useRef } from 'react';
 import SockJS from 'sockjs-client';
 import { Client } from 'stompjs';
 
 const WebSocketContext = createContext(null);
 
+// A resume that gets no answer is retried, then abandoned in favour of the live stream
+const RESUME_TIMEOUT_MS = 3000;
+const MAX_RESUME_ATTEMPTS = 3;
+
 export const useWebSocket = () => {
   return useContext(WebSocketContext);
 };
@@ -15,6 +19,114 @@ export const WebSocketProvider = ({ children }) => {
   const [subscriptions, setSubscriptions] = useState([]);
   const [latency, setLatency] = useState(null);
   
+  // Per-symbol resume state: last applied sequence, and live ticks held back while a resume is in flight
+  const lastSequences = useRef({});
+  const pendingTicks = useRef({});
+  const resumeTimers = useRef({});
+  
+  const applyTick = useCallback((symbol, data) => {
+    if (data.sequence != null) {
+      lastSequences.current[symbol] = data.sequence;
+    }
+    setStockPrices(prev => ({
+      ...prev,
+      [symbol]: data
+    }));
+  }, []);
+  
+  const clearResumeTimer = useCallback((symbol) => {
+    clearTimeout(resumeTimers.current[symbol]);
+    delete resumeTimers.current[symbol];
+  }, []);
+  
+  // Give up on the gap: show the newest held-back tick and restart sequencing from the live stream
+  const flushPending = useCallback((symbol) => {
+    const queued = pendingTicks.current[symbol] || [];
+    delete pendingTicks.current[symbol];
+    delete lastSequences.current[symbol];
+    const latest = queued.reduce(
+      (newest, tick) => (newest == null || tick.sequence > newest.sequence ? tick : newest), null);
+    if (latest) {
+      applyTick(symbol, latest);
+    }
+  }, [applyTick]);
+  
+  // Ask the server for everything after the last applied sequence (or a snapshot) instead of re-fetching history
+  const requestResume = useCallback((stompClient, symbol) => {
+    pendingTicks.current[symbol] = pendingTicks.current[symbol] || [];
+    
+    const send = (attempt) => {
+      resumeTimers.current[symbol] = setTimeout(() => {
+        delete resumeTimers.current[symbol];
+        if (!pendingTicks.current[symbol]) {
+          return;
+        }
+        if (attempt < MAX_RESUME_ATTEMPTS && stompClient.connected) {
+          send(attempt + 1);
+        } else {
+          console.warn(`Resume for ${symbol} timed out; continuing from live ticks`);
+          flushPending(symbol);
+        }
+      }, RESUME_TIMEOUT_MS);
+      
+      if (stompClient.connected) {
+        stompClient.publish({
+          destination: '/app/resume',
+          body: JSON.stringify({ symbol, lastSequence: lastSequences.current[symbol] ?? null })
+        });
+      }
+    };
+    
+    clearResumeTimer(symbol);
+    send(1);
+  }, [clearResumeTimer, flushPending]);
+  
+  const handleResume = useCallback((stompClient, response) => {
+    const { symbol, ticks, latestSequence } = response;
+    if (!pendingTicks.current[symbol]) {
+      return; // Answer to a resume that already timed out
+    }
+    clearResumeTimer(symbol);
+    const queued = pendingTicks.current[symbol];
+    delete pendingTicks.current[symbol];
+    
+    if (response.snapshot) {
+      // The gap was too large to replay; adopt the server's current state
+      delete lastSequences.current[symbol];
+    }
+    const last = lastSequences.current[symbol];
+    const missed = ticks.filter(tick => last == null || tick.sequence > last);
+    let latest = missed.length > 0 ? missed[missed.length - 1] : null;
+    let sequence = latest ? latest.sequence : (last ?? latestSequence);
+    
+    // Live ticks that arrived during the resume, minus those the replay already covered
+    for (let i = 0; i < queued.length; i++) {
+      const tick = queued[i];
+      if (sequence != null && tick.sequence > sequence + 1) {
+        // The resume was served before the live subscription took effect: the ticks in
+        // between are in neither, so ask again from here and keep holding the rest back
+        if (latest) {
+          applyTick(symbol, latest);
+        } else {
+          lastSequences.current[symbol] = sequence;
+        }
+        pendingTicks.current[symbol] = queued.slice(i);
+        requestResume(stompClient, symbol);
+        return;
+      }
+      if (sequence == null || tick.sequence > sequence) {
+        latest = tick;
+        sequence = tick.sequence;
+      }
+    }
+    
+    if (latest) {
+      applyTick(symbol, latest);
+    } else if (sequence != null) {
+      lastSequences.current[symbol] = sequence;
+    }
+  }, [applyTick, clearResumeTimer, requestResume]);
+  
   // Connect to WebSocket
   useEffect(() => {
     const connect = () => {
@@ -28,6 +140,13 @@ export const WebSocketProvider = ({ children }) => {
       });
       
       stompClient.onConnect = () => {
+        stompClient.subscribe('/user/queue/resume', (message) => {
+          try {
+            handleResume(stompClient, JSON.parse(message.body));
+          } catch (error) {
+            console.error('Error parsing resume response:', error);
+          }
+        });
         setIsConnected(true);
         console.log('Connected to WebSocket');
       };
@@ -65,6 +184,25 @@ export const WebSocketProvider = ({ children }) => {
       try {
         const data = JSON.parse(message.body);
         
+        // Held back until the in-flight resume has been applied
+        if (pendingTicks.current[symbol]) {
+          pendingTicks.current[symbol].push(data);
+          return;
+        }
+        
+        const last = lastSequences.current[symbol];
+        if (last != null && data.sequence != null) {
+          if (data.sequence <= last) {
+            return; // Already applied
+          }
+          if (data.sequence > last + 1) {
+            // Missed ticks: fill the gap from the server's replay buffer
+            pendingTicks.current[symbol] = [data];
+            requestResume(client, symbol);
+            return;
+          }
+        }
+        
         // Calculate client-side latency
         const receivedTime = Date.now();
         const latency = receivedTime - data.processedTimestamp;
@@ -75,15 +213,15 @@ export const WebSocketProvider = ({ children }) => {
           return (prevLatency * 4 + latency) / 5;
         });
         
-        setStockPrices(prev => ({
-          ...prev,
-          [symbol]: data
-        }));
+        applyTick(symbol, data);
       } catch (error) {
         console.error('Error parsing WebSocket message:', error);
       }
     });
     
+    // Catch up on anything missed while disconnected (or get the current state on first subscribe)
+    requestResume(client, symbol);
+    
     setSubscriptions(prev => [...prev, { symbol, subscription }]);
     
     return () => {
@@ -92,7 +230,7 @@ export const WebSocketProvider = ({ children }) => {
       }
       setSubscriptions(prev => prev.filter(sub => sub.symbol !== symbol));
     };
-  }, [client]);
+  }, [client, applyTick, requestResume]);
   
   // Unsubscribe from a stock's price updates
   const unsubscribeFromStock = useCallback((symbol) => {